@@ -0,0 +1,187 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/* Bootstrap confidence intervals for tournament totals, from a MatchLog.
+
+ Each resample reweights the logged matches and recomputes every strategy's
+ total from them; the spread of those totals gives a percentile interval, and
+ the rank each strategy lands on in each resample gives the probability of
+ every rank. Nothing is re-simulated.
+
+ This is the Poisson bootstrap: instead of drawing matches with replacement,
+ which means a random memory access per draw, every match gets a Poisson(1)
+ weight. For large logs the two agree, and the weighted form lets the match
+ arrays be streamed in cache-sized blocks, each block serving a whole chunk
+ of resamples before moving on. Chunks run in parallel, and every resample
+ has its own SplittableRandom split off a fixed seed and consumed in match
+ order, so a run is reproducible however the work is divided. */
+public class Bootstrap {
+
+    static class Result {
+        String[] names;
+        double[] total;          // point estimate from the log as given
+        double[] lower, upper;   // percentile interval on the total
+        double[][] rankProbability; // [player][rank], rank 0 is first place
+        int resamples;
+        double confidence;
+    }
+
+    static Result run(MatchLog log, int resamples, double confidence, long seed) {
+        int n = log.numPlayers(), matches = log.size();
+        if (matches == 0) throw new IllegalArgumentException("Empty match log");
+
+        // score[3m+s] is the per-round average of seat s in match m, who[3m+s] the strategy in it.
+        double[] score = new double[3 * matches];
+        int[] who = Arrays.copyOf(log.seats, 3 * matches);
+        for (int m = 0; m < matches; m++)
+            for (int s = 0; s < 3; s++)
+                score[3 * m + s] = (double) log.payoff(m, s) / log.rounds(m);
+
+        double[][] totals = new double[n][resamples];
+        int[][] ranks = new int[n][resamples];
+        long[] seeds = new long[resamples];
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int b = 0; b < resamples; b++) seeds[b] = root.nextLong();
+
+        int chunks = (resamples + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int first = c * CHUNK, count = Math.min(CHUNK, resamples - first);
+            SplittableRandom[] rng = new SplittableRandom[count];
+            for (int b = 0; b < count; b++) rng[b] = new SplittableRandom(seeds[first + b]);
+            double[][] t = new double[count][n];
+            for (int start = 0; start < matches; start += BLOCK) {
+                int end = 3 * Math.min(matches, start + BLOCK);
+                for (int b = 0; b < count; b++) {
+                    double[] tb = t[b];
+                    SplittableRandom r = rng[b];
+                    long bits = 0;
+                    int left = 0;
+                    for (int m = 3 * start; m < end; m += 3) {
+                        if (left == 0) {
+                            bits = r.nextLong();
+                            left = 3;
+                        }
+                        int u = (int) (bits & POISSON1_MASK);
+                        int w = POISSON1_TABLE[u >>> POISSON1_TABLE_SHIFT];
+                        if (w < 0) w = poisson1(u);
+                        bits >>>= POISSON1_BITS;
+                        left--;
+                        tb[who[m]] += w * score[m];
+                        tb[who[m + 1]] += w * score[m + 1];
+                        tb[who[m + 2]] += w * score[m + 2];
+                    }
+                }
+            }
+            for (int b = 0; b < count; b++) {
+                double[] sorted = t[b].clone();
+                Arrays.sort(sorted);
+                for (int p = 0; p < n; p++) {
+                    totals[p][first + b] = t[b][p];
+                    ranks[p][first + b] = n - upperBound(sorted, t[b][p]); // players scoring strictly more
+                }
+            }
+        });
+
+        Result result = new Result();
+        result.names = log.names;
+        result.resamples = resamples;
+        result.confidence = confidence;
+        result.total = new double[n];
+        for (int m = 0; m < 3 * matches; m++) result.total[who[m]] += score[m];
+        result.lower = new double[n];
+        result.upper = new double[n];
+        result.rankProbability = new double[n][n];
+        double tail = (1 - confidence) / 2;
+        IntStream.range(0, n).parallel().forEach(p -> {
+            Arrays.sort(totals[p]);
+            result.lower[p] = totals[p][(int) Math.floor(tail * (resamples - 1))];
+            result.upper[p] = totals[p][(int) Math.ceil((1 - tail) * (resamples - 1))];
+            for (int b = 0; b < resamples; b++) result.rankProbability[p][ranks[p][b]] += 1.0 / resamples;
+        });
+        return result;
+    }
+
+    // Resamples handled together by one task, and matches per cache block.
+    static final int CHUNK = 32;
+    static final int BLOCK = 4096;
+
+    // Poisson(1) weights are drawn by inversion from 21-bit uniforms, three to a
+    // nextLong(). The 2^-21 quantisation of the CDF is far below bootstrap noise.
+    static final int POISSON1_BITS = 21;
+    static final int POISSON1_MASK = (1 << POISSON1_BITS) - 1;
+    static final int[] POISSON1_CDF = new int[16]; // P(X <= x) scaled to 2^21
+
+    static {
+        double p = Math.exp(-1), cdf = 0;
+        for (int x = 0; x < POISSON1_CDF.length; x++) {
+            cdf += p;
+            p /= x + 1;
+            POISSON1_CDF[x] = (int) Math.round(cdf * (1 << POISSON1_BITS));
+        }
+        POISSON1_CDF[POISSON1_CDF.length - 1] = 1 << POISSON1_BITS;
+    }
+
+    // Most 2^10-wide slices of the 21-bit range lie inside one step of the CDF, so a
+    // table on the top 11 bits settles the weight outright; only the few slices a
+    // step boundary cuts through (marked -1) fall back to the search.
+    static final int POISSON1_TABLE_SHIFT = 10;
+    static final int[] POISSON1_TABLE = new int[1 << (POISSON1_BITS - POISSON1_TABLE_SHIFT)];
+
+    static {
+        for (int slice = 0; slice < POISSON1_TABLE.length; slice++) {
+            int lo = poisson1(slice << POISSON1_TABLE_SHIFT);
+            int hi = poisson1(((slice + 1) << POISSON1_TABLE_SHIFT) - 1);
+            POISSON1_TABLE[slice] = lo == hi ? lo : -1;
+        }
+    }
+
+    static int poisson1(int u) {
+        int x = 0;
+        while (u >= POISSON1_CDF[x]) x++;
+        return x;
+    }
+
+    // Index of the first element of sorted greater than x.
+    static int upperBound(double[] sorted, double x) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= x) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    static void print(Result r, PrintStream out) {
+        int[] sortedOrder = MonteCarlo.sortByMean(r.total);
+        out.println("Bootstrap Results (" + r.resamples + " resamples, " + r.confidence * 100 + "% intervals)");
+        for (int i = 0; i < sortedOrder.length; i++) {
+            int p = sortedOrder[i];
+            int likely = 0;
+            for (int rank = 1; rank < r.rankProbability[p].length; rank++)
+                if (r.rankProbability[p][rank] > r.rankProbability[p][likely]) likely = rank;
+            out.println(String.format("%s: %.3f points [%.3f, %.3f], P(rank %d) = %.3f, most likely rank %d (%.3f)",
+                    r.names[p], r.total[p], r.lower[p], r.upper[p], i + 1, r.rankProbability[p][i],
+                    likely + 1, r.rankProbability[p][likely]));
+        }
+        out.println();
+    }
+
+    // Usage: Bootstrap <results.csv> [resamples] [confidence]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: Bootstrap <results.csv> [resamples] [confidence]");
+            System.exit(2);
+        }
+        MatchLog log = MatchLog.read(Paths.get(args[0]));
+        int resamples = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        double confidence = args.length > 2 ? Double.parseDouble(args[2]) : 0.95;
+        print(run(log, resamples, confidence, 1), System.out);
+    }
+}
@@ -0,0 +1,68 @@
+package com.company;
+
+import java.util.Random;
+
+/* Common random numbers for comparing tournament configurations.
+
+ Every random draw in a tournament, the match length and each seat's own
+ randomness, comes from a stream whose seed depends only on the base seed,
+ the repetition number and the (i, j, k, seat) position in the round robin.
+ Two configurations run with the same CommonRandomNumbers therefore see the
+ same draws wherever they play the same match, and most of the noise cancels
+ out of their score differences.
+
+ With antithetic pairs on, repetition 2r+1 replays repetition 2r with every
+ stream complemented (u becomes 1-u), so the pair's errors are negatively
+ correlated and their mean has less variance than two independent runs. */
+public class CommonRandomNumbers {
+
+    // Seat numbers used for the match's own draws: its length, and its execution noise (see TremblingHand).
+    static final int MATCH_SEAT = 3;
+    static final int NOISE_SEAT = 4;
+
+    final long seed;
+    final boolean antithetic;
+
+    public CommonRandomNumbers(long seed, boolean antithetic) {
+        this.seed = seed;
+        this.antithetic = antithetic;
+    }
+
+    // The random stream for one seat of one match in the given repetition.
+    Random stream(long repetition, int i, int j, int k, int seat) {
+        long base = antithetic ? repetition >>> 1 : repetition;
+        long h = mix(seed ^ mix(base));
+        h = mix(h ^ i);
+        h = mix(h ^ ((long) j << 21));
+        h = mix(h ^ ((long) k << 42));
+        h = mix(h ^ seat);
+        return antithetic && (repetition & 1) == 1 ? new Antithetic(h) : new Random(h);
+    }
+
+    // Length of the match at (i, j, k), uniform over minRounds..maxRounds.
+    int rounds(long repetition, int i, int j, int k, int minRounds, int maxRounds) {
+        return minRounds + (int) Math.rint((maxRounds - minRounds) * stream(repetition, i, j, k, MATCH_SEAT).nextDouble());
+    }
+
+    // Stafford's variant 13 of the MurmurHash3 finaliser.
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // Complements every bit the generator produces, so nextDouble() gives 1-u
+    // (to within 2^-53) for the u the plain stream with the same seed would give.
+    static class Antithetic extends Random {
+        private static final long serialVersionUID = 1L;
+
+        Antithetic(long seed) {
+            super(seed);
+        }
+
+        @Override
+        protected int next(int bits) {
+            return ~super.next(bits) & (int) ((1L << bits) - 1);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.company;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/* Checks an optimised engine configuration against the plain reference engine.
+
+ The reference is the original match loop: a fresh player from makePlayer for
+ every seat, full int[] histories grown by extendIntArray, no pooling,
+ windows, threads or watchdog. validate() plays a full round robin with the
+ engine as configured (workers, pool, watchdog and so on) and every match
+ again with the reference, both on common random numbers from one seed, so
+ each match gets the same length and random streams in both. It then
+ compares every match's per-seat payoffs, checks that each triple was played
+ exactly once, and compares the final totals and ranking, all exactly.
+
+ For the first divergent match (in round robin order) the engine's match is
+ replayed with 1, 2, ... rounds to find the first round whose payoffs differ.
+ Its actions follow from the payoffs, since a player's payoff in a round
+ says what it played (cooperating pays 6, 3 or 0 and defecting 8, 5 or 2).
+ Both histories are then printed up to that round. A replay can't recreate
+ state a player carried over from earlier matches (a pooled player that
+ doesn't fully reset, say), so such bugs tend to show up at an earlier round
+ on replay than they did in the tournament.
+
+ Strategies that don't take their randomness from Player.rng (submissions,
+ ProcessStrategy) are not reproducible, so leave them out of a roster under
+ validation. */
+public class DifferentialValidator {
+
+    static class Report {
+        long matches, divergentMatches, missing, duplicated;
+        boolean totalsEqual, rankingEqual;
+        int[] firstDivergent;  // i, j, k of the first divergent match, or null
+        int firstDivergentRound = -1;
+        String referenceHistory, engineHistory;
+
+        boolean passed() {
+            return divergentMatches == 0 && missing == 0 && duplicated == 0 && totalsEqual && rankingEqual;
+        }
+    }
+
+    static Report validate(ThreePrisonersDilemma engine, long seed, PrintStream out) {
+        CommonRandomNumbers crn = engine.crn;
+        MatchLog log = engine.matchLog;
+        boolean verbose = engine.verbose;
+        long repetition = engine.repetition;
+        engine.crn = new CommonRandomNumbers(seed, false);
+        engine.repetition = 0;
+        engine.matchLog = new MatchLog(engine.playerNames());
+        engine.verbose = false;
+        try {
+            return compare(engine, out);
+        } finally {
+            engine.crn = crn;
+            engine.matchLog = log;
+            engine.verbose = verbose;
+            engine.repetition = repetition;
+        }
+    }
+
+    static Report compare(ThreePrisonersDilemma engine, PrintStream out) {
+        int n = engine.numPlayers;
+        TripleIndex index = new TripleIndex(n);
+        if (index.size() > Integer.MAX_VALUE / 3) throw new IllegalArgumentException("Roster too large to validate: " + n);
+        ScoreTally optimised = engine.playTournament();
+        MatchLog log = engine.matchLog;
+
+        // Reference payoffs per triple, in round robin order.
+        int size = (int) index.size();
+        long[] referencePayoffs = new long[3 * size];
+        int[] referenceRounds = new int[size];
+        ScoreTally reference = new ScoreTally(n, ThreePrisonersDilemma.MIN_ROUNDS, ThreePrisonersDilemma.MAX_ROUNDS);
+        int[] ijk = new int[3];
+        for (int t = 0; t < size; t++) {
+            index.unrank(t, ijk);
+            int rounds = engine.crn.rounds(0, ijk[0], ijk[1], ijk[2], ThreePrisonersDilemma.MIN_ROUNDS, ThreePrisonersDilemma.MAX_ROUNDS);
+            long[] p = referenceMatch(engine, ijk[0], ijk[1], ijk[2], rounds, null);
+            referenceRounds[t] = rounds;
+            for (int s = 0; s < 3; s++) {
+                referencePayoffs[3 * t + s] = p[s];
+                reference.add(ijk[s], p[s], rounds);
+            }
+        }
+
+        Report r = new Report();
+        r.matches = log.size();
+        int[] played = new int[size];
+        int firstDivergent = size;
+        for (int m = 0; m < log.size(); m++) {
+            int t = (int) index.rank(log.seat(m, 0), log.seat(m, 1), log.seat(m, 2));
+            if (played[t]++ > 0) {
+                r.duplicated++;
+                continue;
+            }
+            boolean same = log.rounds(m) == referenceRounds[t];
+            for (int s = 0; s < 3; s++) same &= log.payoff(m, s) == referencePayoffs[3 * t + s];
+            if (!same) {
+                r.divergentMatches++;
+                firstDivergent = Math.min(firstDivergent, t);
+            }
+        }
+        for (int t = 0; t < size; t++) if (played[t] == 0) r.missing++;
+
+        r.totalsEqual = true;
+        for (int p = 0; p < n; p++) r.totalsEqual &= optimised.score(p) == reference.score(p);
+        r.rankingEqual = Arrays.equals(optimised.sortedOrder(), reference.sortedOrder());
+        if (firstDivergent < size) {
+            index.unrank(firstDivergent, ijk);
+            r.firstDivergent = ijk.clone();
+            locateRound(engine, r, referenceRounds[firstDivergent]);
+        }
+        print(engine, r, out);
+        return r;
+    }
+
+    // The original match loop (plus execution noise, if on), recording each seat's actions in histories (if given).
+    static long[] referenceMatch(ThreePrisonersDilemma engine, int i, int j, int k, int rounds, int[][] histories) {
+        ThreePrisonersDilemma.Player A = engine.makePlayer(i), B = engine.makePlayer(j), C = engine.makePlayer(k);
+        A.rng = engine.crn.stream(0, i, j, k, 0);
+        B.rng = engine.crn.stream(0, i, j, k, 1);
+        C.rng = engine.crn.stream(0, i, j, k, 2);
+        A.onMatchStart();
+        B.onMatchStart();
+        C.onMatchStart();
+        engine.startModels(A, B, C);
+        TremblingHand hand = engine.trembles(i, j, k);
+        int[] HistoryA = new int[0], HistoryB = new int[0], HistoryC = new int[0];
+        long ScoreA = 0, ScoreB = 0, ScoreC = 0;
+        for (int r = 0; r < rounds; r++) {
+            int PlayA = A.selectAction(r, HistoryA, HistoryB, HistoryC);
+            int PlayB = B.selectAction(r, HistoryB, HistoryC, HistoryA);
+            int PlayC = C.selectAction(r, HistoryC, HistoryA, HistoryB);
+            if (hand != null) {
+                // The reference draws its flips one round at a time: no fast path.
+                int flips = hand.flips(r);
+                PlayA ^= flips & 1;
+                PlayB ^= (flips >> 1) & 1;
+                PlayC ^= flips >> 2;
+            }
+            ScoreA = ScoreA + ThreePrisonersDilemma.payoff[PlayA][PlayB][PlayC];
+            ScoreB = ScoreB + ThreePrisonersDilemma.payoff[PlayB][PlayC][PlayA];
+            ScoreC = ScoreC + ThreePrisonersDilemma.payoff[PlayC][PlayA][PlayB];
+            engine.observeRound(A, B, C, PlayA, PlayB, PlayC);
+            HistoryA = engine.extendIntArray(HistoryA, PlayA);
+            HistoryB = engine.extendIntArray(HistoryB, PlayB);
+            HistoryC = engine.extendIntArray(HistoryC, PlayC);
+        }
+        if (histories != null) {
+            histories[0] = HistoryA;
+            histories[1] = HistoryB;
+            histories[2] = HistoryC;
+        }
+        return new long[]{ScoreA, ScoreB, ScoreC};
+    }
+
+    // Replays the engine's match one round longer at a time until its payoffs part from the reference's.
+    static void locateRound(ThreePrisonersDilemma engine, Report r, int rounds) {
+        int i = r.firstDivergent[0], j = r.firstDivergent[1], k = r.firstDivergent[2];
+        int[][] reference = new int[3][];
+        referenceMatch(engine, i, j, k, rounds, reference);
+        int[][] actions = new int[3][rounds];
+        long[] before = new long[3], expected = new long[3];
+        int round = 0;
+        for (; round < rounds; round++) {
+            long[] after = engine.replayTriple(i, j, k, round + 1);
+            boolean same = true;
+            for (int s = 0; s < 3; s++) {
+                long gained = after[s] - before[s];
+                actions[s][round] = gained == 8 || gained == 5 || gained == 2 ? 1 : 0;
+                expected[s] += ThreePrisonersDilemma.payoff[reference[s][round]][reference[(s + 1) % 3][round]][reference[(s + 2) % 3][round]];
+                same &= after[s] == expected[s];
+            }
+            before = after;
+            if (!same) break;
+        }
+        // Only the match length differed if every replayed round agreed.
+        r.firstDivergentRound = round;
+        int shown = Math.min(round + 1, rounds);
+        r.referenceHistory = histories(reference, shown);
+        r.engineHistory = histories(actions, shown);
+    }
+
+    static String histories(int[][] actions, int rounds) {
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < 3; s++) {
+            sb.append(s == 0 ? "" : " / ");
+            for (int r = 0; r < rounds; r++) sb.append(actions[s][r] == 0 ? 'C' : 'D');
+        }
+        return sb.toString();
+    }
+
+    static void print(ThreePrisonersDilemma engine, Report r, PrintStream out) {
+        String[] names = engine.playerNames();
+        out.println("Differential validation: " + (r.passed() ? "PASSED" : "FAILED"));
+        out.println(String.format("  %d matches played, %d divergent, %d missing, %d duplicated; totals %s, ranking %s",
+                r.matches, r.divergentMatches, r.missing, r.duplicated,
+                r.totalsEqual ? "equal" : "differ", r.rankingEqual ? "equal" : "differs"));
+        if (r.firstDivergent != null) {
+            out.println("  first divergent match: " + names[r.firstDivergent[0]] + ", " + names[r.firstDivergent[1]]
+                    + ", " + names[r.firstDivergent[2]] + " (" + r.firstDivergent[0] + "," + r.firstDivergent[1]
+                    + "," + r.firstDivergent[2] + ") at round " + r.firstDivergentRound);
+            out.println("  reference: " + r.referenceHistory);
+            out.println("  engine:    " + r.engineHistory);
+        }
+        out.println();
+    }
+
+    // A roster of n seats, each one of the built-in strategies chosen at random.
+    static ThreePrisonersDilemma randomRoster(int n, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        int[] strategy = new int[n];
+        for (int p = 0; p < n; p++) strategy[p] = rng.nextInt(ThreePrisonersDilemma.BUILT_IN_PLAYERS);
+        ThreePrisonersDilemma engine = new ThreePrisonersDilemma() {
+            Player makePlayer(int which) {
+                if (which < 0 || which >= n) throw new RuntimeException("Bad argument passed to makePlayer");
+                return super.makePlayer(strategy[which]);
+            }
+        };
+        engine.numPlayers = n;
+        return engine;
+    }
+
+    // Usage: DifferentialValidator <roster size> <seed> <workers>
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        ThreePrisonersDilemma engine = randomRoster(n, seed);
+        engine.workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        if (!validate(engine, seed, System.out).passed()) System.exit(1);
+    }
+}
@@ -0,0 +1,334 @@
+package com.company;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/* Fits a strategy's decisions to a lookup table that can play in its place.
+
+ The strategy's decisions are recorded from matches against every pair of
+ the roster (DifferentialValidator.referenceMatch on common random numbers,
+ so the traces are reproducible), and a table is fitted from what it did in
+ each situation. A situation is keyed on
+
+   - the round, up to max(memory, OPENING), so openings and probes are kept
+     apart from the rest of the match;
+   - the last `memory` rounds of all three seats' actions, 3 bits a round;
+   - each opponent's defection rate so far, in `buckets` equal bands (the
+     running aggregates that memory-k alone can't see, e.g. a strategy
+     that forgives a mostly cooperative opponent).
+
+ Each entry holds the fraction of times the strategy defected there.
+ Situations never seen in training back off to the table for one round less
+ memory, down to memory 0, then to the strategy's overall defection rate.
+
+ fit() tries memory 0 .. maxMemory with and without the aggregates and keeps
+ the table that matches most decisions in validation matches (played on a
+ second seed), the one with fewer cells on a tie. Its fidelity is then
+ reported on test matches from a third seed, which played no part in
+ fitting or choosing it, so the figure isn't flattered by the choice.
+ Fidelity is the percentage of decisions where the table's likelier action
+ is the one the strategy took; a strategy that randomises can't be matched
+ exactly, so compare it with the fidelity of its own likelier action.
+
+ Set ThreePrisonersDilemma.standIns[which] to a fitted table to play it
+ instead of strategy `which`: a distilled player looks back only `memory`
+ rounds, so it runs on the windowed match loop and costs a few array reads
+ a decision. Leave standIns null for exact runs with the originals. */
+public class Distiller {
+
+    static final int OPENING = 4;
+    static final int MAX_MEMORY = 5;
+    static final int[] BUCKETS = {1, 4};
+
+    static class Table {
+        final String name;
+        final int memory, buckets;
+        final float[][] defect; // [m][key], the fraction of defections with m rounds of memory, NaN if never seen
+        float prior;            // the overall fraction, for situations unseen at every memory
+
+        Table(String name, int memory, int buckets) {
+            if (memory < 0 || memory > MAX_MEMORY) throw new IllegalArgumentException("Memory must be in 0.." + MAX_MEMORY + ": " + memory);
+            this.name = name;
+            this.memory = memory;
+            this.buckets = buckets;
+            defect = new float[memory + 1][];
+            for (int m = 0; m <= memory; m++) defect[m] = new float[size(m, buckets)];
+        }
+
+        static int size(int m, int buckets) {
+            return (Math.max(m, OPENING) + 1) * (1 << 3 * m) * buckets * buckets;
+        }
+
+        // The last `memory` rounds of joint actions, the latest in the lowest 3 bits.
+        int bits(int n, History my, History opp1, History opp2) {
+            int bits = 0;
+            for (int r = 1; r <= Math.min(n, memory); r++)
+                bits |= (my.get(n - r) << 2 | opp1.get(n - r) << 1 | opp2.get(n - r)) << 3 * (r - 1);
+            return bits;
+        }
+
+        // The opponents' defection bands, given their defection counts in the first n rounds.
+        int bands(int n, int defections1, int defections2) {
+            if (n == 0) return 0;
+            return Math.min(buckets - 1, defections1 * buckets / n) * buckets + Math.min(buckets - 1, defections2 * buckets / n);
+        }
+
+        int key(int m, int n, int bits, int bands) {
+            return (Math.min(n, Math.max(m, OPENING)) << 3 * m | bits & (1 << 3 * m) - 1) * buckets * buckets + bands;
+        }
+
+        // Probability of defecting in round n with these histories.
+        double defect(int n, History my, History opp1, History opp2) {
+            return defect(n, my, opp1, opp2, opp1.defections(), opp2.defections());
+        }
+
+        // The same, with the opponents' defection counts so far given, e.g. kept up as the match goes.
+        double defect(int n, History my, History opp1, History opp2, int defections1, int defections2) {
+            int bits = bits(n, my, opp1, opp2), bands = bands(n, defections1, defections2);
+            for (int m = memory; m >= 0; m--) {
+                float p = defect[m][key(m, n, bits, bands)];
+                if (!Float.isNaN(p)) return p;
+            }
+            return prior;
+        }
+
+        // Situations seen in training, at full memory.
+        int entries() {
+            int seen = 0;
+            for (float p : defect[memory]) if (!Float.isNaN(p)) seen++;
+            return seen;
+        }
+
+        // Cells at every memory, backoff tables included.
+        long cells() {
+            long cells = 0;
+            for (float[] level : defect) cells += level.length;
+            return cells;
+        }
+
+        String describe() {
+            return "memory " + memory + (buckets > 1 ? ", " + buckets + " defection bands" : ", no aggregates");
+        }
+    }
+
+    // One match's histories and the seats (as a mask) that the strategy being distilled played.
+    static class Trace {
+        final int[][] histories = new int[3][];
+        int seats;
+    }
+
+    // Every match (target, a, b) with a <= b, `repetitions` times over, on common random numbers from `seed`.
+    static List<Trace> record(Supplier<ThreePrisonersDilemma> roster, int target, int repetitions, long seed) {
+        ThreePrisonersDilemma engine = roster.get();
+        engine.verbose = false;
+        engine.noise = 0;
+        int n = engine.numPlayers;
+        List<Trace> traces = new ArrayList<>();
+        for (int r = 0; r < repetitions; r++) {
+            engine.crn = new CommonRandomNumbers(seed + r, false);
+            for (int a = 0; a < n; a++)
+                for (int b = a; b < n; b++) {
+                    Trace t = new Trace();
+                    int rounds = engine.crn.rounds(0, target, a, b, ThreePrisonersDilemma.MIN_ROUNDS, ThreePrisonersDilemma.MAX_ROUNDS);
+                    DifferentialValidator.referenceMatch(engine, target, a, b, rounds, t.histories);
+                    t.seats = 1 | (a == target ? 2 : 0) | (b == target ? 4 : 0);
+                    traces.add(t);
+                }
+        }
+        return traces;
+    }
+
+    // Calls visit(n, my, opp1, opp2, action) for every decision of the distilled strategy in the traces.
+    interface Visitor {
+        void visit(int n, History my, History opp1, History opp2, int action);
+    }
+
+    // The first n rounds of a full history, as selectAction saw them in round n.
+    static final class Prefix extends History {
+        int[] actions;
+        int length;
+
+        Prefix over(int[] actions, int length) {
+            this.actions = actions;
+            this.length = length;
+            return this;
+        }
+
+        int get(int round) {
+            if (round >= length) throw new IllegalArgumentException("Round " + round + " is not played yet");
+            return actions[round];
+        }
+
+        int length() {
+            return length;
+        }
+
+        int defections() {
+            int d = 0;
+            for (int r = 0; r < length; r++) d += actions[r];
+            return d;
+        }
+    }
+
+    static void replay(List<Trace> traces, Visitor visitor) {
+        Prefix my = new Prefix(), opp1 = new Prefix(), opp2 = new Prefix();
+        for (Trace t : traces) {
+            int rounds = t.histories[0].length;
+            for (int s = 0; s < 3; s++) {
+                if ((t.seats >> s & 1) == 0) continue;
+                int[] h0 = t.histories[s], h1 = t.histories[(s + 1) % 3], h2 = t.histories[(s + 2) % 3];
+                for (int n = 0; n < rounds; n++)
+                    visitor.visit(n, my.over(h0, n), opp1.over(h1, n), opp2.over(h2, n), h0[n]);
+            }
+        }
+    }
+
+    static Table train(String name, List<Trace> traces, int memory, int buckets) {
+        Table table = new Table(name, memory, buckets);
+        int[][] defects = new int[memory + 1][], seen = new int[memory + 1][];
+        for (int m = 0; m <= memory; m++) {
+            defects[m] = new int[table.defect[m].length];
+            seen[m] = new int[table.defect[m].length];
+        }
+        long[] overall = new long[2];
+        replay(traces, (n, my, opp1, opp2, action) -> {
+            int bits = table.bits(n, my, opp1, opp2), bands = table.bands(n, opp1.defections(), opp2.defections());
+            for (int m = 0; m <= memory; m++) {
+                int key = table.key(m, n, bits, bands);
+                defects[m][key] += action;
+                seen[m][key]++;
+            }
+            overall[0] += action;
+            overall[1]++;
+        });
+        for (int m = 0; m <= memory; m++)
+            for (int key = 0; key < seen[m].length; key++)
+                table.defect[m][key] = seen[m][key] > 0 ? (float) defects[m][key] / seen[m][key] : Float.NaN;
+        table.prior = overall[1] > 0 ? (float) overall[0] / overall[1] : 0;
+        return table;
+    }
+
+    // Percentage of the decisions in the traces where the table's likelier action is the one taken.
+    static double fidelity(Table table, List<Trace> traces) {
+        long[] matched = new long[2];
+        replay(traces, (n, my, opp1, opp2, action) -> {
+            if ((table.defect(n, my, opp1, opp2) > 0.5 ? 1 : 0) == action) matched[0]++;
+            matched[1]++;
+        });
+        return matched[1] > 0 ? 100.0 * matched[0] / matched[1] : Double.NaN;
+    }
+
+    static class Fit {
+        String name;
+        Table table;                                  // the best of the candidates on validation
+        List<Table> candidates = new ArrayList<>();
+        List<double[]> fidelity = new ArrayList<>();  // per candidate: training, validation
+        double testFidelity;                          // of `table`, on matches not used to fit or choose it
+    }
+
+    // Distils strategy `target`: `repetitions` round robins of its matches each for training (seeds from
+    // seed), validation (from seed + repetitions) and test (from seed + 2 * repetitions).
+    static Fit fit(Supplier<ThreePrisonersDilemma> roster, int target, int maxMemory, int repetitions, long seed) {
+        List<Trace> training = record(roster, target, repetitions, seed);
+        List<Trace> validation = record(roster, target, repetitions, seed + repetitions);
+        Fit fit = new Fit();
+        fit.name = roster.get().playerNames()[target];
+        double best = -1;
+        for (int memory = 0; memory <= maxMemory; memory++)
+            for (int buckets : BUCKETS) {
+                Table table = train(fit.name, training, memory, buckets);
+                double valid = fidelity(table, validation);
+                fit.candidates.add(table);
+                fit.fidelity.add(new double[]{fidelity(table, training), valid});
+                if (valid > best || valid == best && table.cells() < fit.table.cells()) {
+                    best = valid;
+                    fit.table = table;
+                }
+            }
+        fit.testFidelity = fidelity(fit.table, record(roster, target, repetitions, seed + 2L * repetitions));
+        return fit;
+    }
+
+    // What a stand-in does to the tournament: per-decision cost and the strategy's score and rank.
+    static class Comparison {
+        double originalNanos, distilledNanos;
+        double originalScore, distilledScore;
+        int originalRank, distilledRank;
+    }
+
+    // `repetitions` tournaments with the original and with the table in its place, on the same common random
+    // numbers, each after one more that warms up the JIT.
+    static Comparison compare(Supplier<ThreePrisonersDilemma> roster, int target, Table table, int repetitions, long seed) {
+        Comparison c = new Comparison();
+        for (int run = 0; run < 2; run++) {
+            ThreePrisonersDilemma engine = roster.get();
+            engine.crn = new CommonRandomNumbers(seed, false);
+            if (run == 1) {
+                engine.standIns = new Table[engine.numPlayers];
+                engine.standIns[target] = table;
+            }
+            MonteCarlo.repeatedScores(engine, repetitions, 1); // warms up the JIT before anything is timed
+            engine.profiler = new StrategyProfiler();
+            double[] mean = new double[engine.numPlayers];
+            for (double[] scores : MonteCarlo.repeatedScores(engine, 0, repetitions))
+                for (int p = 0; p < mean.length; p++) mean[p] += scores[p] / repetitions;
+            int[] order = MonteCarlo.sortByMean(mean);
+            int rank = 0;
+            while (order[rank] != target) rank++;
+            StrategyProfiler.Stats stats = engine.profiler.stats.get(table.name);
+            double nanos = stats != null && stats.calls > 0 ? (double) stats.wallNanos / stats.calls : Double.NaN;
+            if (run == 0) {
+                c.originalNanos = nanos;
+                c.originalScore = mean[target];
+                c.originalRank = rank + 1;
+            } else {
+                c.distilledNanos = nanos;
+                c.distilledScore = mean[target];
+                c.distilledRank = rank + 1;
+            }
+        }
+        return c;
+    }
+
+    static void print(Fit fit, Comparison c, PrintStream out) {
+        out.println("Distilled " + fit.name);
+        for (int t = 0; t < fit.candidates.size(); t++) {
+            Table table = fit.candidates.get(t);
+            double[] f = fit.fidelity.get(t);
+            out.println(String.format("  %s %-32s %7d entries   training %6.2f%%   validation %6.2f%%",
+                    table == fit.table ? "*" : " ", table.describe(), table.entries(), f[0], f[1]));
+        }
+        out.println(String.format("  fidelity of * on unseen test matches: %.2f%%", fit.testFidelity));
+        if (c != null) {
+            out.println(String.format("  per decision %.0f ns -> %.0f ns; score %.3f (rank %d) -> %.3f (rank %d)",
+                    c.originalNanos, c.distilledNanos, c.originalScore, c.originalRank, c.distilledScore, c.distilledRank));
+        }
+        out.println();
+    }
+
+    // Usage: Distiller [repetitions] [max memory] [strategies...]
+    public static void main(String[] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int maxMemory = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        String[] names = new ThreePrisonersDilemma().playerNames();
+        String[] wanted = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length)
+                : new String[]{"Mervyn", "Mundhra_Shreyas_Sudhir_Player", "PAVLOV2"};
+        int[] targets = new int[wanted.length];
+        for (int t = 0; t < wanted.length; t++) {
+            targets[t] = Arrays.asList(names).indexOf(wanted[t]);
+            if (targets[t] < 0) throw new IllegalArgumentException("No strategy named " + wanted[t]);
+        }
+        Fit[] fits = new Fit[targets.length];
+        Comparison[] comparisons = new Comparison[targets.length];
+        IntStream.range(0, targets.length).parallel()
+                .forEach(t -> fits[t] = fit(ThreePrisonersDilemma::new, targets[t], maxMemory, repetitions, 1));
+        // One at a time, so the timings don't compete for cores.
+        for (int t = 0; t < targets.length; t++)
+            comparisons[t] = compare(ThreePrisonersDilemma::new, targets[t], fits[t].table, repetitions, 1000);
+        for (int t = 0; t < targets.length; t++) print(fits[t], comparisons[t], System.out);
+    }
+}
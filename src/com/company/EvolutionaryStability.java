@@ -0,0 +1,136 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+
+/* Evolutionary stability of each strategy, read off a ScoreTensor with no further matches.
+
+ Picture a large population playing X in which a small share e plays Y,
+ where every match seats three players drawn at random. With pi(F|a,b) the
+ payoff per round to an F meeting a and b, an X and a Y earn
+
+     W(X) = (1-e)^2 pi(X|X,X) + 2e(1-e) pi(X|X,Y) + e^2 pi(X|Y,Y)
+     W(Y) = (1-e)^2 pi(Y|X,X) + 2e(1-e) pi(Y|X,Y) + e^2 pi(Y|Y,Y)
+
+ The invasion fitness of Y against X is W(Y) - W(X) as e -> 0, that is
+ pi(Y|X,X) - pi(X|X,X); Y can invade if it is positive. X resists Y when,
+ taking the three differences d0 = pi(X|X,X) - pi(Y|X,X),
+ d1 = pi(X|X,Y) - pi(Y|X,Y) and d2 = pi(X|Y,Y) - pi(Y|Y,Y) in turn, the
+ first that isn't zero is positive. If they are all zero Y is neutral (as
+ when two roster entries play the same strategy). X is an ESS if it resists
+ every other strategy, and neutrally stable if it resists or is neutral to
+ each. The invasion barrier is the largest share of Y that X still resists:
+ W(X) - W(Y) = d0 + 2(d1 - d0) e + (d0 - 2 d1 + d2) e^2, up to its first
+ root in (0, 1].
+
+ All n^2 ordered pairs are scored, a row of invaders per task, in parallel.
+ Pairs whose triples were never played are left out (NaN). */
+public class EvolutionaryStability {
+
+    // Differences below this are ties; per-round averages of integer payoffs differ by far more.
+    static final double TOLERANCE = 1e-9;
+
+    static class Result {
+        String[] names;
+        double[][] invasionFitness; // [resident][invader]: pi(Y|X,X) - pi(X|X,X)
+        double[][] barrier;         // [resident][invader]: largest invader share resisted, 0 if invadable
+        boolean[] ess, neutrallyStable;
+        int[] bestInvader;          // per resident, the invader with the highest invasion fitness, or -1
+    }
+
+    static Result analyse(ScoreTensor tensor) {
+        int n = tensor.numPlayers();
+        Result r = new Result();
+        r.names = tensor.names;
+        r.invasionFitness = new double[n][n];
+        r.barrier = new double[n][n];
+        r.ess = new boolean[n];
+        r.neutrallyStable = new boolean[n];
+        r.bestInvader = new int[n];
+        IntStream.range(0, n).parallel().forEach(x -> {
+            boolean ess = true, neutral = true;
+            int best = -1;
+            double xxx = tensor.payoff(x, x, x);
+            for (int y = 0; y < n; y++) {
+                if (y == x) continue;
+                double d0 = xxx - tensor.payoff(y, x, x);
+                double d1 = tensor.payoff(x, x, y) - tensor.payoff(y, x, y);
+                double d2 = tensor.payoff(x, y, y) - tensor.payoff(y, y, y);
+                r.invasionFitness[x][y] = -d0;
+                if (Double.isNaN(d0) || Double.isNaN(d1) || Double.isNaN(d2)) {
+                    r.barrier[x][y] = Double.NaN;
+                    continue;
+                }
+                int sign = resists(d0, d1, d2);
+                if (sign <= 0) ess = false;
+                if (sign < 0) neutral = false;
+                r.barrier[x][y] = sign > 0 ? barrier(d0, d1, d2) : 0;
+                if (best < 0 || r.invasionFitness[x][y] > r.invasionFitness[x][best]) best = y;
+            }
+            r.ess[x] = ess && n > 1;
+            r.neutrallyStable[x] = neutral && n > 1;
+            r.bestInvader[x] = best;
+        });
+        return r;
+    }
+
+    // 1 if X resists Y, 0 if Y is neutral, -1 if Y can invade.
+    static int resists(double d0, double d1, double d2) {
+        for (double d : new double[]{d0, d1, d2}) {
+            if (d > TOLERANCE) return 1;
+            if (d < -TOLERANCE) return -1;
+        }
+        return 0;
+    }
+
+    // First e in (0, 1] where d0 + 2(d1 - d0) e + (d0 - 2 d1 + d2) e^2 stops being positive, or 1.
+    static double barrier(double d0, double d1, double d2) {
+        double a = d0 - 2 * d1 + d2, b = 2 * (d1 - d0), c = d0;
+        double root = 1;
+        if (Math.abs(a) < TOLERANCE) {
+            if (b < -TOLERANCE && -c / b > TOLERANCE) root = -c / b;
+        } else {
+            double disc = b * b - 4 * a * c;
+            if (disc >= 0) {
+                double s = Math.sqrt(disc);
+                for (double e : new double[]{(-b - s) / (2 * a), (-b + s) / (2 * a)})
+                    if (e > TOLERANCE && e < root) root = e; // a root at 0 is where d0 = 0
+            }
+        }
+        return Math.min(1, root);
+    }
+
+    static void print(Result r, PrintStream out) {
+        int n = r.names.length;
+        double[] order = new double[n];
+        for (int x = 0; x < n; x++) order[x] = r.bestInvader[x] >= 0 ? -r.invasionFitness[x][r.bestInvader[x]] : 0;
+        out.println("Evolutionary Stability (most robust residents first)");
+        for (int x : MonteCarlo.sortByMean(order)) {
+            String status = r.ess[x] ? "ESS" : r.neutrallyStable[x] ? "neutrally stable" : "invadable";
+            int y = r.bestInvader[x];
+            if (y < 0) {
+                out.println(r.names[x] + ": " + status);
+                continue;
+            }
+            double barrier = 1;
+            for (int z = 0; z < n; z++) if (z != x && !Double.isNaN(r.barrier[x][z])) barrier = Math.min(barrier, r.barrier[x][z]);
+            int invaders = 0;
+            for (int z = 0; z < n; z++) if (z != x && r.invasionFitness[x][z] > TOLERANCE) invaders++;
+            out.println(String.format("%s: %s, %d invaders, best invader %s (%+.3f per round)%s",
+                    r.names[x], status, invaders, r.names[y], r.invasionFitness[x][y],
+                    r.ess[x] ? String.format(", invasion barrier %.3f", barrier) : ""));
+        }
+        out.println();
+    }
+
+    // Usage: EvolutionaryStability <results.csv>
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: EvolutionaryStability <results.csv>");
+            System.exit(2);
+        }
+        print(analyse(ScoreTensor.from(MatchLog.read(Paths.get(args[0])))), System.out);
+    }
+}
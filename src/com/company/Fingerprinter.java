@@ -0,0 +1,244 @@
+package com.company;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/* Works out, during a match, which roster strategy each opponent is most likely playing.
+
+ For each opponent and candidate strategy the fingerprinter runs shadow
+ copies of the candidate (from makePlayer) in that opponent's seat, fed the
+ same histories the opponent sees, and scores the opponent's actual action
+ against the shadow's. A decision made without drawing randomness must
+ match, or the shadow is pruned; PROBER's D,C,C opening, ADAPTIVE's script
+ and NastyPlayer's always-D fall out this way within a few rounds. A
+ decision that drew randomness counts log(1/2) whatever was played. A
+ candidate whose shadow draws randomness (at match start or later) gets
+ further shadows with their own random streams, up to `particles`, so that a
+ choice like FreakyPlayer's is likely covered by one of them. A candidate's
+ log-likelihood is that of the mean over its live shadows, and it is pruned
+ once none are left.
+
+ Per-round cost is bounded by `budget` shadow decisions, whatever the
+ roster size. Shadows that are up to date go first; spare budget starts
+ new shadows and lets them catch up by replaying the match so far, so a
+ large roster is covered over the first rounds while pruning frees budget.
+ Only candidates whose shadows are up to date are ranked.
+
+ A strategy sets Player.fingerprinter in its constructor and the engine
+ resets and feeds it like an OpponentModel. */
+public class Fingerprinter {
+
+    static final double LOG_HALF = Math.log(0.5);
+
+    // A Random that notes whether a decision drew from it.
+    static class CountingRandom extends Random {
+        private static final long serialVersionUID = 1L;
+
+        int draws;
+
+        CountingRandom(long seed) {
+            super(seed);
+        }
+
+        protected int next(int bits) {
+            draws++;
+            return super.next(bits);
+        }
+    }
+
+    // One shadow copy of a candidate in one opponent's seat.
+    static class Shadow {
+        final int candidate;
+        final ThreePrisonersDilemma.Player player;
+        final CountingRandom rng;
+        int synced = 0;        // rounds this shadow has been scored on
+        double logWeight = 0;
+        boolean drew;          // drew randomness at least once
+
+        Shadow(int candidate, ThreePrisonersDilemma.Player player, CountingRandom rng) {
+            this.candidate = candidate;
+            this.player = player;
+            this.rng = rng;
+        }
+    }
+
+    final ThreePrisonersDilemma engine;
+    final int[] candidates;   // roster indices
+    final int particles, budget;
+    final Random seeds;
+
+    // Per opponent (0 for oppHistory1, 1 for oppHistory2).
+    final List<List<Shadow>> shadows = List.of(new ArrayList<>(), new ArrayList<>());
+    final List<ArrayDeque<Integer>> pending = List.of(new ArrayDeque<>(), new ArrayDeque<>());
+    final int[][] requested;  // shadows queued or started, per opponent and candidate slot
+    final int[][] dead;       // shadows pruned, per opponent and candidate slot
+    int[] myHistory = new int[0], oppHistory1 = new int[0], oppHistory2 = new int[0];
+    // The histories before the latest round, shared by every shadow that is up to date.
+    int[] prevMy, prevOpp1, prevOpp2;
+
+    public Fingerprinter(ThreePrisonersDilemma engine, int[] candidates, int particles, int budget, long seed) {
+        this.engine = engine;
+        this.candidates = candidates.clone();
+        this.particles = Math.max(1, particles);
+        this.budget = Math.max(1, budget);
+        this.seeds = new Random(seed);
+        requested = new int[2][candidates.length];
+        dead = new int[2][candidates.length];
+    }
+
+    // Every built-in strategy as a candidate.
+    public Fingerprinter(ThreePrisonersDilemma engine) {
+        this(engine, builtIns(), 3, 128, 1);
+    }
+
+    static int[] builtIns() {
+        int[] all = new int[ThreePrisonersDilemma.BUILT_IN_PLAYERS];
+        for (int p = 0; p < all.length; p++) all[p] = p;
+        return all;
+    }
+
+    void reset() {
+        for (int o = 0; o < 2; o++) {
+            shadows.get(o).clear();
+            pending.get(o).clear();
+            Arrays.fill(requested[o], 1);
+            Arrays.fill(dead[o], 0);
+            for (int c = 0; c < candidates.length; c++) pending.get(o).add(c);
+        }
+        myHistory = new int[0];
+        oppHistory1 = new int[0];
+        oppHistory2 = new int[0];
+    }
+
+    // Records one round from the player's own point of view, then spends the round's budget.
+    void observe(int my, int opp1, int opp2) {
+        prevMy = myHistory;
+        prevOpp1 = oppHistory1;
+        prevOpp2 = oppHistory2;
+        myHistory = engine.extendIntArray(myHistory, my);
+        oppHistory1 = engine.extendIntArray(oppHistory1, opp1);
+        oppHistory2 = engine.extendIntArray(oppHistory2, opp2);
+        int spent = 0;
+        for (int o = 0; o < 2; o++) spent = advance(o, spent, budget * (o + 1) / 2);
+    }
+
+    // Brings opponent o's shadows up to date, then starts pending ones, until `limit` decisions are spent.
+    int advance(int o, int spent, int limit) {
+        List<Shadow> list = shadows.get(o);
+        int rounds = myHistory.length;
+        for (int s = 0; s < list.size() && spent < limit; s++) {
+            Shadow shadow = list.get(s);
+            while (shadow.synced < rounds && shadow.logWeight > Double.NEGATIVE_INFINITY && spent < limit) {
+                score(o, shadow);
+                spent++;
+            }
+        }
+        ArrayDeque<Integer> queue = pending.get(o);
+        while (spent < limit && !queue.isEmpty()) {
+            Shadow shadow = start(o, queue.poll());
+            list.add(shadow);
+            while (shadow.synced < rounds && shadow.logWeight > Double.NEGATIVE_INFINITY && spent < limit) {
+                score(o, shadow);
+                spent++;
+            }
+        }
+        list.removeIf(shadow -> shadow.logWeight == Double.NEGATIVE_INFINITY);
+        return spent;
+    }
+
+    Shadow start(int o, int slot) {
+        CountingRandom rng = new CountingRandom(seeds.nextLong());
+        ThreePrisonersDilemma.Player player = engine.makePlayer(candidates[slot]);
+        player.rng = rng;
+        Shadow shadow = new Shadow(slot, player, rng);
+        player.onMatchStart();
+        if (rng.draws > 0) drew(o, shadow);
+        return shadow;
+    }
+
+    // The first time a candidate's shadow draws randomness, more shadows are queued for it.
+    void drew(int o, Shadow shadow) {
+        shadow.drew = true;
+        for (; requested[o][shadow.candidate] < particles; requested[o][shadow.candidate]++)
+            pending.get(o).add(shadow.candidate);
+    }
+
+    // Asks the shadow for round `synced` and scores it against what the opponent actually played.
+    void score(int o, Shadow shadow) {
+        int t = shadow.synced;
+        boolean upToDate = t == myHistory.length - 1;
+        int[] mine = upToDate ? prevMy : Arrays.copyOf(myHistory, t);
+        int[] first = upToDate ? prevOpp1 : Arrays.copyOf(oppHistory1, t);
+        int[] second = upToDate ? prevOpp2 : Arrays.copyOf(oppHistory2, t);
+        shadow.rng.draws = 0;
+        int action;
+        try {
+            // The seat order each opponent sees: opponent 1 sees (2, me), opponent 2 sees (me, 1).
+            action = o == 0 ? shadow.player.selectAction(t, first, second, mine)
+                    : shadow.player.selectAction(t, second, mine, first);
+        } catch (RuntimeException e) {
+            action = -1; // a candidate that can't cope with these histories isn't this opponent
+        }
+        int actual = o == 0 ? oppHistory1[t] : oppHistory2[t];
+        if (action < 0 || (shadow.rng.draws == 0 && action != actual)) {
+            shadow.logWeight = Double.NEGATIVE_INFINITY;
+            dead[o][shadow.candidate]++;
+        } else if (shadow.rng.draws > 0) {
+            shadow.logWeight += LOG_HALF;
+            if (!shadow.drew) drew(o, shadow);
+        }
+        shadow.synced++;
+    }
+
+    // Log-likelihood of opponent (1 or 2)'s actions so far under candidate slot c: the log of
+    // the mean likelihood over its up-to-date shadows, pruned ones counting as zero.
+    // -infinity if all are pruned or none has caught up yet.
+    double logLikelihood(int opponent, int c) {
+        List<Shadow> list = shadows.get(opponent - 1);
+        double max = Double.NEGATIVE_INFINITY;
+        int count = 0;
+        for (Shadow shadow : list)
+            if (shadow.candidate == c && shadow.synced == myHistory.length) {
+                max = Math.max(max, shadow.logWeight);
+                count++;
+            }
+        if (max == Double.NEGATIVE_INFINITY) return max;
+        double sum = 0;
+        for (Shadow shadow : list)
+            if (shadow.candidate == c && shadow.synced == myHistory.length) sum += Math.exp(shadow.logWeight - max);
+        return max + Math.log(sum / (count + dead[opponent - 1][c]));
+    }
+
+    // The roster index of the most likely strategy for opponent 1 or 2, or -1 if none is ranked yet.
+    int mostLikely(int opponent) {
+        int best = -1;
+        double bestLog = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < candidates.length; c++) {
+            double l = logLikelihood(opponent, c);
+            if (l > bestLog) {
+                bestLog = l;
+                best = candidates[c];
+            }
+        }
+        return best;
+    }
+
+    // Posterior probability that opponent 1 or 2 plays the strategy with the given roster
+    // index, with a uniform prior over the candidates ranked so far.
+    double posterior(int opponent, int candidate) {
+        double[] l = new double[candidates.length];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < candidates.length; c++) max = Math.max(max, l[c] = logLikelihood(opponent, c));
+        if (max == Double.NEGATIVE_INFINITY) return 0;
+        double total = 0, mine = 0;
+        for (int c = 0; c < candidates.length; c++) {
+            double p = Math.exp(l[c] - max);
+            total += p;
+            if (candidates[c] == candidate) mine += p;
+        }
+        return mine / total;
+    }
+}
@@ -0,0 +1,91 @@
+package com.company;
+
+/* One seat's past actions in a match, as seen by a player with a bounded lookback.
+
+ The int[] histories handed to selectAction hold every round so far, so a
+ match of 10^7 rounds needs 10^7 ints per seat (and extendIntArray copies
+ them every round). A player that never looks further back than a fixed
+ number of rounds declares it via Player.lookback() and implements the
+ History form of selectAction; the engine then keeps each seat's history in
+ a Window, a ring buffer of the last few actions plus running counts, so a
+ match needs O(window) memory whatever its length.
+
+ get(round) takes the same absolute round numbers as the int[] form, so a
+ strategy reads history.get(n-1) where it used to read history[n-1]. Reading
+ further back than the window holds throws. In matches against players that
+ still need full histories the engine wraps the usual arrays in an Array
+ view instead, so a bounded player has a single implementation. */
+public abstract class History {
+
+    // The action played in the given round, which must be within the window.
+    abstract int get(int round);
+
+    // Rounds played so far.
+    abstract int length();
+
+    // Running count of rounds in which this seat defected.
+    abstract int defections();
+
+    int cooperations() {
+        return length() - defections();
+    }
+
+    // The last `capacity` actions of a seat (rounded up to a power of two).
+    static final class Window extends History {
+        final int[] ring;
+        final int mask;
+        int length = 0;
+        int defections = 0;
+
+        Window(int capacity) {
+            int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+            ring = new int[size];
+            mask = size - 1;
+        }
+
+        void add(int action) {
+            ring[length & mask] = action;
+            length++;
+            defections += action;
+        }
+
+        int get(int round) {
+            if (round >= length || round < length - ring.length)
+                throw new IllegalArgumentException("Round " + round + " is outside the history window (rounds "
+                        + Math.max(0, length - ring.length) + ".." + (length - 1) + ")");
+            return ring[round & mask];
+        }
+
+        int length() {
+            return length;
+        }
+
+        int defections() {
+            return defections;
+        }
+    }
+
+    // A full int[] history, re-pointed at each call's array so no view is allocated per round.
+    static final class Array extends History {
+        int[] actions;
+
+        Array over(int[] actions) {
+            this.actions = actions;
+            return this;
+        }
+
+        int get(int round) {
+            return actions[round];
+        }
+
+        int length() {
+            return actions.length;
+        }
+
+        int defections() {
+            int d = 0;
+            for (int a : actions) d += a;
+            return d;
+        }
+    }
+}
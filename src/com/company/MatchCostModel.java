@@ -0,0 +1,108 @@
+package com.company;
+
+import java.util.Arrays;
+
+/* Estimated cost of a match, as the sum of a per-strategy cost for each seat.
+
+ The per-seat costs can come from a StrategyProfiler report of an earlier
+ run, from a quick probe that times each strategy playing itself, or from
+ the match times observed while a ParallelTournament runs, which refine
+ whatever estimate it started from. */
+public class MatchCostModel {
+
+    final double[] seatNanos;
+
+    // Observations gathered by observe(); see refine().
+    final double[] observedNanos, predictedNanos;
+
+    public MatchCostModel(double[] seatNanos) {
+        this.seatNanos = seatNanos.clone();
+        observedNanos = new double[seatNanos.length];
+        predictedNanos = new double[seatNanos.length];
+    }
+
+    // Every strategy assumed to cost the same; the schedule then degrades to plain self-scheduling.
+    static MatchCostModel uniform(int n) {
+        double[] c = new double[n];
+        Arrays.fill(c, 1);
+        return new MatchCostModel(c);
+    }
+
+    // Mean selectAction time per strategy from a profiled run, times the mean match length.
+    static MatchCostModel fromProfiler(StrategyProfiler profiler, String[] names) {
+        double meanRounds = (ThreePrisonersDilemma.MIN_ROUNDS + ThreePrisonersDilemma.MAX_ROUNDS) / 2.0;
+        double[] c = new double[names.length];
+        double known = 0;
+        int count = 0;
+        for (int p = 0; p < names.length; p++) {
+            StrategyProfiler.Stats s = profiler.stats.get(names[p]);
+            if (s != null && s.calls > 0) {
+                c[p] = s.meanWall() * meanRounds;
+                known += c[p];
+                count++;
+            }
+        }
+        // Strategies the profiler never saw get the average of those it did.
+        double fallback = count > 0 ? known / count : 1;
+        for (int p = 0; p < c.length; p++) if (c[p] == 0) c[p] = fallback;
+        return new MatchCostModel(c);
+    }
+
+    // Times each strategy in `repeats` matches against itself; a third of each is its seat cost.
+    // The matches are played on fresh players straight through payoffsOfMatch, so they are not
+    // tournament matches: nothing is tallied, logged, printed, watched or counted as progress.
+    static MatchCostModel probe(ThreePrisonersDilemma engine, int repeats) {
+        int n = engine.numPlayers;
+        int rounds = (ThreePrisonersDilemma.MIN_ROUNDS + ThreePrisonersDilemma.MAX_ROUNDS) / 2;
+        double[] c = new double[n];
+        for (int p = 0; p < n; p++) {
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < repeats; r++) {
+                ThreePrisonersDilemma.Player A = engine.makePlayer(p), B = engine.makePlayer(p), C = engine.makePlayer(p);
+                long start = System.nanoTime();
+                engine.payoffsOfMatch(A, B, C, rounds, null);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            c[p] = Math.max(1, best / 3.0);
+        }
+        return new MatchCostModel(c);
+    }
+
+    double cost(int i, int j, int k) {
+        return seatNanos[i] + seatNanos[j] + seatNanos[k];
+    }
+
+    // Records that the match (i, j, k) took the given time. Not thread safe; workers keep
+    // their own model copies via copy() and the results are merged with absorb().
+    void observe(int i, int j, int k, long nanos) {
+        double predicted = cost(i, j, k);
+        charge(i, nanos, predicted);
+        charge(j, nanos, predicted);
+        charge(k, nanos, predicted);
+    }
+
+    // Charges strategy p its predicted share of a match's actual time.
+    void charge(int p, long nanos, double predicted) {
+        observedNanos[p] += nanos * seatNanos[p] / predicted;
+        predictedNanos[p] += seatNanos[p];
+    }
+
+    MatchCostModel copy() {
+        return new MatchCostModel(seatNanos);
+    }
+
+    void absorb(MatchCostModel worker) {
+        for (int p = 0; p < seatNanos.length; p++) {
+            observedNanos[p] += worker.observedNanos[p];
+            predictedNanos[p] += worker.predictedNanos[p];
+        }
+    }
+
+    // A new model with each strategy's cost scaled by how far observations were from predictions.
+    MatchCostModel refine() {
+        double[] c = seatNanos.clone();
+        for (int p = 0; p < c.length; p++)
+            if (predictedNanos[p] > 0) c[p] *= observedNanos[p] / predictedNanos[p];
+        return new MatchCostModel(c);
+    }
+}
@@ -0,0 +1,133 @@
+package com.company;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/* Per-match results of one or more tournaments, kept in primitive arrays.
+
+ Each entry is a triple of strategy indices, the match length and the three
+ seats' payoff totals, which is everything needed to recompute tournament
+ scores (and so to resample them) without re-running a match. Logs can be
+ written to and read back from a CSV file headed by the strategy names:
+
+     # players: NicePlayer,NastyPlayer,...
+     i,j,k,rounds,payoffA,payoffB,payoffC
+     0,0,0,97,582,582,582
+
+ A log is not thread safe; give each worker its own and append them. */
+public class MatchLog {
+
+    static final String PLAYERS_PREFIX = "# players: ";
+    static final String HEADER = "i,j,k,rounds,payoffA,payoffB,payoffC";
+
+    final String[] names;
+    int size;
+    int[] seats = new int[3 * 1024];    // i, j, k of match m at 3m .. 3m+2
+    int[] rounds = new int[1024];
+    long[] payoffs = new long[3 * 1024]; // payoff to seat s of match m at 3m+s
+
+    public MatchLog(String[] names) {
+        this.names = names;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int numPlayers() {
+        return names.length;
+    }
+
+    public void add(int i, int j, int k, int matchRounds, long[] matchPayoffs) {
+        if (size == rounds.length) {
+            int capacity = size * 2;
+            seats = Arrays.copyOf(seats, 3 * capacity);
+            rounds = Arrays.copyOf(rounds, capacity);
+            payoffs = Arrays.copyOf(payoffs, 3 * capacity);
+        }
+        seats[3 * size] = i;
+        seats[3 * size + 1] = j;
+        seats[3 * size + 2] = k;
+        rounds[size] = matchRounds;
+        payoffs[3 * size] = matchPayoffs[0];
+        payoffs[3 * size + 1] = matchPayoffs[1];
+        payoffs[3 * size + 2] = matchPayoffs[2];
+        size++;
+    }
+
+    public void append(MatchLog other) {
+        if (!Arrays.equals(names, other.names)) throw new IllegalArgumentException("Logs are for different rosters");
+        long[] p = new long[3];
+        for (int m = 0; m < other.size; m++) {
+            p[0] = other.payoffs[3 * m];
+            p[1] = other.payoffs[3 * m + 1];
+            p[2] = other.payoffs[3 * m + 2];
+            add(other.seats[3 * m], other.seats[3 * m + 1], other.seats[3 * m + 2], other.rounds[m], p);
+        }
+    }
+
+    // Strategy index in the given seat (0, 1 or 2) of match m.
+    int seat(int m, int seat) {
+        return seats[3 * m + seat];
+    }
+
+    long payoff(int m, int seat) {
+        return payoffs[3 * m + seat];
+    }
+
+    int rounds(int m) {
+        return rounds[m];
+    }
+
+    public void write(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(PLAYERS_PREFIX + String.join(",", names));
+            out.newLine();
+            out.write(HEADER);
+            out.newLine();
+            StringBuilder line = new StringBuilder();
+            for (int m = 0; m < size; m++) {
+                line.setLength(0);
+                line.append(seats[3 * m]).append(',').append(seats[3 * m + 1]).append(',').append(seats[3 * m + 2])
+                        .append(',').append(rounds[m]).append(',').append(payoffs[3 * m]).append(',')
+                        .append(payoffs[3 * m + 1]).append(',').append(payoffs[3 * m + 2]);
+                out.write(line.toString());
+                out.newLine();
+            }
+        }
+    }
+
+    public static MatchLog read(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String first = in.readLine();
+            if (first == null || !first.startsWith(PLAYERS_PREFIX))
+                throw new IOException(file + ": missing '" + PLAYERS_PREFIX.trim() + "' line");
+            MatchLog log = new MatchLog(first.substring(PLAYERS_PREFIX.length()).split(","));
+            String header = in.readLine();
+            if (!HEADER.equals(header)) throw new IOException(file + ": expected header " + HEADER);
+            long[] p = new long[3];
+            String line;
+            int lineNo = 2;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isEmpty()) continue;
+                String[] f = line.split(",");
+                if (f.length != 7) throw new IOException(file + ":" + lineNo + ": expected 7 fields");
+                try {
+                    p[0] = Long.parseLong(f[4]);
+                    p[1] = Long.parseLong(f[5]);
+                    p[2] = Long.parseLong(f[6]);
+                    log.add(Integer.parseInt(f[0]), Integer.parseInt(f[1]), Integer.parseInt(f[2]), Integer.parseInt(f[3]), p);
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
+            return log;
+        }
+    }
+}
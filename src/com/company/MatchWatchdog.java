@@ -0,0 +1,204 @@
+package com.company;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/* Runs matches off the tournament thread with a time budget on every selectAction call.
+
+ Each match is handed to a worker thread. The worker stamps the start of every
+ decision into a Guard, and the tournament thread waits on the match in slices
+ of one budget, checking after each slice whether the decision in progress
+ has run over. A strategy that overruns, whether it is merely slow or stuck in
+ a loop it will never leave, forfeits the match: it scores FORFEIT_PAYOFF for
+ every round, and its opponents keep what they had earned plus FORFEIT_CREDIT
+ for each round left unplayed. The stuck worker is interrupted and abandoned;
+ workers are daemon threads, so one that ignores the interrupt cannot keep the
+ JVM alive, and the pool starts a fresh thread for the next match. As an
+ abandoned worker may go on spinning, a strategy that does not return from a
+ decision even GRACE_BUDGETS budgets after the interrupt is quarantined: its later matches are forfeited without being
+ played, so at most one runaway thread is left behind per strategy.
+
+ Without a watchdog the tournament plays matches inline as before. */
+public class MatchWatchdog {
+
+    static final int FORFEIT_PAYOFF = 0;
+    static final int FORFEIT_CREDIT = ThreePrisonersDilemma.payoff[0][0][0];
+    static final int GRACE_BUDGETS = 10;
+
+    final long budgetNanos;
+    final ExecutorService workers;
+    final List<Forfeit> forfeits = Collections.synchronizedList(new ArrayList<>());
+    final Set<String> quarantined = ConcurrentHashMap.newKeySet();
+
+    public MatchWatchdog(long budgetMillis) {
+        if (budgetMillis <= 0) throw new IllegalArgumentException("Budget must be positive");
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "match-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    static class Forfeit {
+        final String strategy;
+        final int i, j, k, seat, round;
+        final long nanos;
+        final boolean abandoned; // true if the decision never returned
+
+        Forfeit(String strategy, int i, int j, int k, int seat, int round, long nanos, boolean abandoned) {
+            this.strategy = strategy;
+            this.i = i;
+            this.j = j;
+            this.k = k;
+            this.seat = seat;
+            this.round = round;
+            this.nanos = nanos;
+            this.abandoned = abandoned;
+        }
+    }
+
+    static class Overrun extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Overrun() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Shared between a match's worker and the thread watching it.
+    class Guard {
+        volatile int seat = -1;     // seat currently deciding, or -1 between decisions
+        volatile int round;
+        volatile long decisionStart;
+        volatile int roundsCompleted;
+        volatile long scoreA, scoreB, scoreC;
+        volatile int overrunSeat;
+        volatile long overrunNanos;
+
+        void begin(int seat, int n) {
+            this.round = n;
+            this.decisionStart = System.nanoTime();
+            this.seat = seat;
+        }
+
+        // Ends the decision begun with begin(), throwing Overrun if it took too long.
+        void end() {
+            long elapsed = System.nanoTime() - decisionStart;
+            int s = seat;
+            seat = -1;
+            if (elapsed > budgetNanos) {
+                overrunSeat = s;
+                overrunNanos = elapsed;
+                throw new Overrun();
+            }
+        }
+
+        void roundDone(int n, long a, long b, long c) {
+            scoreA = a;
+            scoreB = b;
+            scoreC = c;
+            roundsCompleted = n + 1;
+        }
+    }
+
+    // Plays one match under the budget and returns the payoff totals, with any forfeit applied.
+    long[] play(ThreePrisonersDilemma engine, ThreePrisonersDilemma.Player A, ThreePrisonersDilemma.Player B,
+                ThreePrisonersDilemma.Player C, int rounds, int i, int j, int k, TremblingHand hand) {
+        if (!quarantined.isEmpty()) {
+            long[] result = forfeitQuarantined(rounds, A, B, C, i, j, k);
+            if (result != null) return result;
+        }
+        Guard guard = new Guard();
+        Future<long[]> match = workers.submit(() -> engine.instrumentedPayoffsOfMatch(A, B, C, rounds, guard, hand));
+        while (true) {
+            try {
+                return match.get(budgetNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                int seat = guard.seat;
+                long running = System.nanoTime() - guard.decisionStart;
+                if (seat >= 0 && running > budgetNanos && seat == guard.seat) {
+                    match.cancel(true);
+                    return forfeit(guard, seat, rounds, A, B, C, i, j, k, running, !returnsWithinGrace(guard));
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Overrun)
+                    return forfeit(guard, guard.overrunSeat, rounds, A, B, C, i, j, k, guard.overrunNanos, false);
+                throw new RuntimeException("Match " + A.name() + ", " + B.name() + ", " + C.name() + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                match.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a match", e);
+            }
+        }
+    }
+
+    // After an interrupt, gives a slow but well-behaved decision GRACE_BUDGETS more budgets to return.
+    boolean returnsWithinGrace(Guard guard) {
+        long deadline = System.nanoTime() + GRACE_BUDGETS * budgetNanos;
+        while (guard.seat >= 0) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    long[] forfeit(Guard guard, int seat, int rounds, ThreePrisonersDilemma.Player A, ThreePrisonersDilemma.Player B,
+                   ThreePrisonersDilemma.Player C, int i, int j, int k, long nanos, boolean abandoned) {
+        long unplayed = (long) FORFEIT_CREDIT * (rounds - guard.roundsCompleted);
+        long[] result = {guard.scoreA + unplayed, guard.scoreB + unplayed, guard.scoreC + unplayed};
+        result[seat] = (long) FORFEIT_PAYOFF * rounds;
+        ThreePrisonersDilemma.Player offender = seat == 0 ? A : seat == 1 ? B : C;
+        forfeits.add(new Forfeit(offender.name(), i, j, k, seat, guard.round, nanos, abandoned));
+        if (abandoned) quarantined.add(offender.name());
+        return result;
+    }
+
+    // Forfeits every quarantined seat of the match without playing it, or returns null if there are none.
+    long[] forfeitQuarantined(int rounds, ThreePrisonersDilemma.Player A, ThreePrisonersDilemma.Player B,
+                              ThreePrisonersDilemma.Player C, int i, int j, int k) {
+        ThreePrisonersDilemma.Player[] seats = {A, B, C};
+        long[] result = null;
+        for (int seat = 0; seat < 3; seat++) {
+            if (!quarantined.contains(seats[seat].name())) continue;
+            if (result == null) result = new long[] {(long) FORFEIT_CREDIT * rounds, (long) FORFEIT_CREDIT * rounds, (long) FORFEIT_CREDIT * rounds};
+            result[seat] = (long) FORFEIT_PAYOFF * rounds;
+            forfeits.add(new Forfeit(seats[seat].name(), i, j, k, seat, -1, 0, false));
+        }
+        return result;
+    }
+
+    public void printForfeits(PrintStream out) {
+        synchronized (forfeits) {
+            if (forfeits.isEmpty()) return;
+            out.println("Forfeits (budget " + budgetNanos / 1e6 + " ms per decision)");
+            Map<String, Integer> unplayed = new TreeMap<>();
+            for (Forfeit f : forfeits) {
+                if (f.round < 0)
+                    unplayed.merge(f.strategy, 1, Integer::sum);
+                else
+                    out.println(f.strategy + " forfeited match (" + f.i + "," + f.j + "," + f.k + ") in round " + f.round
+                            + " after " + f.nanos / 1e6 + " ms" + (f.abandoned ? ", worker abandoned" : ""));
+            }
+            for (Map.Entry<String, Integer> e : unplayed.entrySet())
+                out.println(e.getKey() + " forfeited " + e.getValue() + " more matches while quarantined");
+            out.println();
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,235 @@
+package com.company;
+
+import java.io.PrintStream;
+
+/* Repeated tournaments and paired comparisons between them.
+
+ Run with common random numbers (engine.crn set to the same seed on both
+ sides), two configurations that share most of their matches see the same
+ match lengths and the same random choices in those matches, so the
+ difference of a strategy's score between them is far less noisy than either
+ score. compare() reports that difference together with how much variance
+ the pairing removed, i.e. how many times more repetitions independent runs
+ would have needed for the same confidence.
+
+ rankUntilSettled() repeats tournaments only until the ranking is clear:
+ it stops as soon as every pair of adjacent strategies in the ranking is
+ separated at the requested confidence, rather than after a fixed count. */
+public class MonteCarlo {
+
+    // Two-sided 95% normal quantile.
+    static final double Z95 = 1.959963984540054;
+
+    // Scores of every player in repetitions firstRepetition .. firstRepetition+reps-1, as [rep][player].
+    static double[][] repeatedScores(ThreePrisonersDilemma engine, long firstRepetition, int reps) {
+        boolean verbose = engine.verbose;
+        engine.verbose = false;
+        try {
+            double[][] scores = new double[reps][];
+            for (int r = 0; r < reps; r++) {
+                engine.repetition = firstRepetition + r;
+                ScoreTally tally = engine.playTournament();
+                scores[r] = new double[tally.numPlayers()];
+                for (int p = 0; p < scores[r].length; p++) scores[r][p] = tally.score(p);
+            }
+            return scores;
+        } finally {
+            engine.verbose = verbose;
+        }
+    }
+
+    // Mean difference of paired observations x - y and its sampling variance.
+    static class Comparison {
+        final int n;
+        final double meanX, meanY, meanDiff;
+        final double pairedVariance;      // variance of the mean of x - y, as observed
+        final double independentVariance; // what it would be if x and y were drawn independently
+
+        Comparison(double[] x, double[] y) {
+            n = x.length;
+            if (n < 2) throw new IllegalArgumentException("Need at least two observations");
+            double sx = 0, sy = 0;
+            for (int r = 0; r < n; r++) {
+                sx += x[r];
+                sy += y[r];
+            }
+            meanX = sx / n;
+            meanY = sy / n;
+            meanDiff = meanX - meanY;
+            double vx = 0, vy = 0, vd = 0;
+            for (int r = 0; r < n; r++) {
+                double dx = x[r] - meanX, dy = y[r] - meanY;
+                vx += dx * dx;
+                vy += dy * dy;
+                vd += (dx - dy) * (dx - dy);
+            }
+            pairedVariance = vd / (n - 1) / n;
+            independentVariance = (vx + vy) / (n - 1) / n;
+        }
+
+        double halfWidth() {
+            return Z95 * Math.sqrt(pairedVariance);
+        }
+
+        // True once the 95% interval on the difference excludes zero.
+        boolean separated() {
+            return Math.abs(meanDiff) > halfWidth();
+        }
+
+        // Factor by which pairing cut the variance, and so the repetitions needed.
+        double varianceReduction() {
+            return pairedVariance > 0 ? independentVariance / pairedVariance : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    // Compares player p's scores in a against player q's in b, repetition by repetition.
+    // With antithetic streams, each pair of repetitions is averaged into one observation
+    // first, as the two halves of a pair are not independent.
+    static Comparison compare(double[][] a, int p, double[][] b, int q, boolean antitheticPairs) {
+        if (a.length != b.length) throw new IllegalArgumentException("Unequal repetition counts");
+        int group = antitheticPairs ? 2 : 1;
+        int n = a.length / group;
+        double[] x = new double[n], y = new double[n];
+        for (int r = 0; r < n * group; r++) {
+            x[r / group] += a[r][p] / group;
+            y[r / group] += b[r][q] / group;
+        }
+        return new Comparison(x, y);
+    }
+
+    // Runs both configurations for reps repetitions on shared random streams and prints
+    // how player p in a compares with player q in b.
+    static Comparison compare(ThreePrisonersDilemma a, int p, ThreePrisonersDilemma b, int q, int reps, PrintStream out) {
+        boolean antithetic = a.crn != null && a.crn.antithetic;
+        double[][] scoresA = repeatedScores(a, 0, reps);
+        double[][] scoresB = a == b ? scoresA : repeatedScores(b, 0, reps);
+        Comparison c = compare(scoresA, p, scoresB, q, antithetic);
+        String nameA = a.playerNames()[p], nameB = b.playerNames()[q];
+        out.println(nameA + " vs " + nameB + " over " + reps + " repetitions"
+                + (a.crn != null ? " (common random numbers" + (antithetic ? ", antithetic pairs)" : ")") : ""));
+        out.println(String.format("  mean %.3f vs %.3f, difference %.3f +/- %.3f (95%%)%s",
+                c.meanX, c.meanY, c.meanDiff, c.halfWidth(), c.separated() ? "" : ", not separated"));
+        out.println(String.format("  variance reduction from pairing: %.1fx", c.varianceReduction()));
+        return c;
+    }
+
+    // Outcome of rankUntilSettled.
+    static class Ranking {
+        int[] sortedOrder;
+        double[] mean;      // mean tournament score per player
+        double[] halfWidth; // half width of its confidence interval
+        int observations;   // independent observations (repetitions, or antithetic pairs)
+        long repetitions;
+        boolean settled;    // false if the budget ran out first
+    }
+
+    // Repeats tournaments until every adjacent pair in the ranking is separated at the
+    // given confidence, or maxRepetitions have been played. Each adjacent gap is tested
+    // on the paired per-repetition differences, with the confidence split Bonferroni
+    // style over the n-1 gaps so that the ranking as a whole holds at that level.
+    static Ranking rankUntilSettled(ThreePrisonersDilemma engine, double confidence, int minObservations,
+                                    long maxRepetitions, PrintStream out) {
+        int n = engine.numPlayers;
+        boolean antithetic = engine.crn != null && engine.crn.antithetic;
+        int group = antithetic ? 2 : 1;
+        double z = normalQuantile(1 - (1 - confidence) / (2.0 * Math.max(1, n - 1)));
+
+        // Running sums per player, and of the differences for every pair p < q.
+        double[] sum = new double[n], sumSq = new double[n];
+        double[][] diffSum = new double[n][n], diffSumSq = new double[n][n];
+        Ranking ranking = new Ranking();
+        ranking.mean = new double[n];
+        ranking.halfWidth = new double[n];
+
+        long repetition = 0;
+        while (repetition + group <= maxRepetitions) {
+            double[][] scores = repeatedScores(engine, repetition, group);
+            repetition += group;
+            double[] obs = new double[n];
+            for (double[] rep : scores)
+                for (int p = 0; p < n; p++) obs[p] += rep[p] / group;
+            for (int p = 0; p < n; p++) {
+                sum[p] += obs[p];
+                sumSq[p] += obs[p] * obs[p];
+                for (int q = p + 1; q < n; q++) {
+                    double d = obs[p] - obs[q];
+                    diffSum[p][q] += d;
+                    diffSumSq[p][q] += d * d;
+                }
+            }
+            int m = ++ranking.observations;
+            if (m < Math.max(2, minObservations)) continue;
+
+            for (int p = 0; p < n; p++) {
+                ranking.mean[p] = sum[p] / m;
+                ranking.halfWidth[p] = z * Math.sqrt(variance(sum[p], sumSq[p], m) / m);
+            }
+            ranking.sortedOrder = sortByMean(ranking.mean);
+            boolean settled = true;
+            for (int r = 0; r + 1 < n && settled; r++) {
+                int p = Math.min(ranking.sortedOrder[r], ranking.sortedOrder[r + 1]);
+                int q = Math.max(ranking.sortedOrder[r], ranking.sortedOrder[r + 1]);
+                double gap = diffSum[p][q] / m;
+                settled = Math.abs(gap) > z * Math.sqrt(variance(diffSum[p][q], diffSumSq[p][q], m) / m);
+            }
+            if (settled) {
+                ranking.settled = true;
+                break;
+            }
+        }
+        ranking.repetitions = repetition;
+        if (ranking.sortedOrder == null) ranking.sortedOrder = sortByMean(ranking.mean);
+
+        if (out != null) {
+            out.println("Ranking " + (ranking.settled ? "settled" : "not settled") + " after " + repetition
+                    + " repetitions at " + confidence * 100 + "% confidence");
+            String[] names = engine.playerNames();
+            for (int p : ranking.sortedOrder)
+                out.println(String.format("%s: %.3f +/- %.3f points.", names[p],
+                        ranking.mean[p], ranking.halfWidth[p]));
+            out.println();
+        }
+        return ranking;
+    }
+
+    static double variance(double sum, double sumSq, int m) {
+        return Math.max(0, (sumSq - sum * sum / m) / (m - 1));
+    }
+
+    static int[] sortByMean(double[] mean) {
+        int[] sortedOrder = new int[mean.length];
+        for (int i = 0; i < mean.length; i++) {
+            int j = i - 1;
+            for (; j >= 0; j--) {
+                if (mean[i] > mean[sortedOrder[j]])
+                    sortedOrder[j + 1] = sortedOrder[j];
+                else break;
+            }
+            sortedOrder[j + 1] = i;
+        }
+        return sortedOrder;
+    }
+
+    // Inverse of the standard normal CDF, by Acklam's rational approximation
+    // (relative error below 1.2e-9, ample for interval widths).
+    static double normalQuantile(double p) {
+        if (p <= 0 || p >= 1) throw new IllegalArgumentException("p must be in (0,1)");
+        final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        if (p < 0.02425) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - 0.02425) return -normalQuantile(1 - p);
+        double q = p - 0.5, r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
@@ -0,0 +1,89 @@
+package com.company;
+
+import java.util.Arrays;
+
+/* Variable-order n-gram model of a player's two opponents, kept up to date by the engine.
+
+ After each round the model counts each opponent's action under every
+ context of the last 0..maxOrder joint actions (a joint action is the
+ player's own action and both opponents', 3 bits), so an update is
+ maxOrder + 1 counter increments. To predict, it backs off from the longest
+ context that has been seen at least minCount times to shorter ones, and
+ returns the Laplace-smoothed cooperation frequency under it: constant time,
+ without rescanning the history.
+
+ A strategy sets Player.opponentModel in its constructor; the engine resets
+ it when a match starts and calls observe() after every round with the
+ player's own view (its action first, then oppHistory1's and oppHistory2's).
+ Code that plays outside the engine can call observe() itself. */
+public class OpponentModel {
+
+    static final int MAX_ORDER = 6;
+
+    final int maxOrder;
+    final int minCount;
+    final int[] offset;     // first context of each order
+    final int[][] counts;   // counts[opponent - 1][2 * (offset[order] + context) + action]
+    final int[] stamp;      // the match in which each context's counts were last written
+    int match = 1;          // reset() starts a new match instead of clearing the counts
+    int context = 0;        // the last maxOrder joint actions, most recent in the low 3 bits
+    int rounds = 0;
+
+    public OpponentModel(int maxOrder, int minCount) {
+        if (maxOrder < 0 || maxOrder > MAX_ORDER) throw new IllegalArgumentException("maxOrder must be 0.." + MAX_ORDER);
+        this.maxOrder = maxOrder;
+        this.minCount = Math.max(1, minCount);
+        offset = new int[maxOrder + 2];
+        for (int m = 0; m <= maxOrder; m++) offset[m + 1] = offset[m] + (1 << (3 * m));
+        counts = new int[2][2 * offset[maxOrder + 1]];
+        stamp = new int[offset[maxOrder + 1]];
+    }
+
+    public OpponentModel() {
+        this(3, 2);
+    }
+
+    // O(1): contexts from earlier matches read as empty until written again.
+    void reset() {
+        if (++match == 0) { // wrapped after 2^32 matches; clear for real once
+            Arrays.fill(stamp, 0);
+            match = 1;
+        }
+        context = 0;
+        rounds = 0;
+    }
+
+    // Records one round, from the player's own point of view.
+    void observe(int my, int opp1, int opp2) {
+        int orders = Math.min(maxOrder, rounds);
+        for (int m = 0; m <= orders; m++) {
+            int ctx = offset[m] + (context & ((1 << (3 * m)) - 1));
+            int at = 2 * ctx;
+            if (stamp[ctx] != match) {
+                stamp[ctx] = match;
+                counts[0][at] = counts[0][at + 1] = counts[1][at] = counts[1][at + 1] = 0;
+            }
+            counts[0][at + opp1]++;
+            counts[1][at + opp2]++;
+        }
+        context = ((context << 3) | (my << 2) | (opp1 << 1) | opp2) & ((1 << (3 * maxOrder)) - 1);
+        rounds++;
+    }
+
+    // Probability that opponent 1 or 2 (as in oppHistory1, oppHistory2) cooperates next round.
+    double cooperation(int opponent) {
+        int[] c = counts[opponent - 1];
+        for (int m = Math.min(maxOrder, rounds); m >= 0; m--) {
+            int ctx = offset[m] + (context & ((1 << (3 * m)) - 1));
+            int at = 2 * ctx;
+            int seen = stamp[ctx] == match ? c[at] + c[at + 1] : 0;
+            if (seen >= minCount || m == 0) return seen == 0 ? 0.5 : (c[at] + 1.0) / (seen + 2.0);
+        }
+        return 0.5; // not reached: order 0 always answers
+    }
+
+    // The opponent's more likely next action, cooperating on a tie.
+    int predict(int opponent) {
+        return cooperation(opponent) >= 0.5 ? 0 : 1;
+    }
+}
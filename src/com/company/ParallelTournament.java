@@ -0,0 +1,141 @@
+package com.company;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Plays a round robin on several threads, longest matches first.
+
+ Match cost varies by orders of magnitude between triples, so splitting the
+ i/j/k loop into equal chunks leaves most threads idle while one finishes an
+ expensive chunk. Instead every triple is given an estimated cost from a
+ MatchCostModel, the triples are sorted by decreasing cost, and workers in a
+ ForkJoinPool take the next one from a shared cursor whenever they finish a
+ match: longest-processing-time-first list scheduling, which bounds the
+ makespan by 4/3 of the optimum for exact costs and leaves only cheap
+ matches for the tail.
+
+ The sort key packs a quantised cost above each triple's TripleIndex rank in
+ one long, so ordering even 10^8 triples is a primitive parallel sort.
+
+ Each worker keeps its own ScoreTally, MatchLog and cost observations, which
+ are merged when the pool finishes; with common random numbers set, the
+ tally is identical to a sequential run. The engine's profiler is not thread
+ safe, so profile with a sequential run and pass the result in via
+ MatchCostModel.fromProfiler. */
+public class ParallelTournament {
+
+    final ThreePrisonersDilemma engine;
+    final int workers;
+    MatchCostModel costs; // replaced after run() by the model refined with the run's own timings
+
+    // Set after run(): each worker's time inside matches, and the run's elapsed time.
+    long[] busyNanos;
+    long wallNanos;
+
+    public ParallelTournament(ThreePrisonersDilemma engine, int workers, MatchCostModel costs) {
+        this.engine = engine;
+        this.workers = workers;
+        this.costs = costs;
+    }
+
+    // Triple ranks from..to-1 ordered by decreasing estimated cost.
+    long[] schedule(long from, long to) {
+        TripleIndex index = new TripleIndex(engine.numPlayers);
+        long size = to - from;
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many triples to schedule: " + size);
+        int rankBits = 64 - Long.numberOfLeadingZeros(Math.max(1, to - 1));
+        int costBits = 63 - rankBits;
+        double maxCost = 0;
+        for (double c : costs.seatNanos) maxCost = Math.max(maxCost, 3 * c);
+        double scale = ((1L << costBits) - 1) / Math.max(maxCost, Double.MIN_NORMAL);
+
+        long[] keys = new long[(int) size];
+        int[] ijk = new int[3];
+        for (int r = 0; r < size; r++) {
+            index.unrank(from + r, ijk);
+            long q = (long) (costs.cost(ijk[0], ijk[1], ijk[2]) * scale);
+            // Complementing the cost makes an ascending sort put the most expensive first.
+            keys[r] = (((1L << costBits) - 1 - q) << rankBits) | (from + r);
+        }
+        Arrays.parallelSort(keys);
+        long rankMask = (1L << rankBits) - 1;
+        for (int r = 0; r < keys.length; r++) keys[r] &= rankMask;
+        return keys;
+    }
+
+    ScoreTally run() {
+        long size = new TripleIndex(engine.numPlayers).size();
+        if (engine.metrics != null) engine.metrics.startTournament(engine.playerNames(), size, workers);
+        ScoreTally total = run(0, size);
+        if (engine.metrics != null) engine.metrics.finishTournament();
+        return total;
+    }
+
+    // Plays the triples ranked from..to-1 only, e.g. one segment of a checkpointed run.
+    ScoreTally run(long from, long to) {
+        if (engine.profiler != null) throw new IllegalStateException("StrategyProfiler is not thread safe; profile sequentially");
+        int n = engine.numPlayers;
+        TripleIndex index = new TripleIndex(n);
+        long[] order = schedule(from, to);
+        AtomicLong cursor = new AtomicLong();
+
+        List<ScoreTally> tallies = new ArrayList<>();
+        List<MatchLog> logs = new ArrayList<>();
+        List<MatchCostModel> observations = new ArrayList<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        busyNanos = new long[workers];
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            for (int w = 0; w < workers; w++) {
+                ScoreTally tally = new ScoreTally(n, ThreePrisonersDilemma.MIN_ROUNDS, ThreePrisonersDilemma.MAX_ROUNDS);
+                MatchLog log = engine.matchLog != null ? new MatchLog(engine.matchLog.names) : null;
+                MatchCostModel seen = costs.copy();
+                tallies.add(tally);
+                logs.add(log);
+                observations.add(seen);
+                int worker = w;
+                tasks.add(pool.submit(() -> {
+                    int[] ijk = new int[3];
+                    long t;
+                    while ((t = cursor.getAndIncrement()) < order.length) {
+                        index.unrank(order[(int) t], ijk);
+                        long matchStart = System.nanoTime();
+                        engine.playTriple(ijk[0], ijk[1], ijk[2], tally, log);
+                        long nanos = System.nanoTime() - matchStart;
+                        seen.observe(ijk[0], ijk[1], ijk[2], nanos);
+                        busyNanos[worker] += nanos;
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) task.join();
+        } finally {
+            pool.shutdown();
+        }
+        wallNanos = System.nanoTime() - start;
+
+        ScoreTally total = tallies.get(0);
+        for (int w = 1; w < workers; w++) total.merge(tallies.get(w));
+        if (engine.matchLog != null) for (MatchLog log : logs) engine.matchLog.append(log);
+        for (MatchCostModel seen : observations) costs.absorb(seen);
+        costs = costs.refine();
+        return total;
+    }
+
+    void printUtilisation(PrintStream out) {
+        long busy = 0, max = 0;
+        for (long b : busyNanos) {
+            busy += b;
+            max = Math.max(max, b);
+        }
+        out.println(String.format("%d workers: makespan %.1f ms, busy %.1f ms total, utilisation %.1f%%, "
+                        + "slowest worker %.1f%% over the mean",
+                workers, wallNanos / 1e6, busy / 1e6, 100.0 * busy / ((double) wallNanos * workers),
+                100.0 * (max - (double) busy / workers) / Math.max(1, (double) busy / workers)));
+    }
+}
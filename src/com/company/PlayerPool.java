@@ -0,0 +1,91 @@
+package com.company;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/* Reusable Player instances, one pool per thread.
+
+ runTournament used to build three fresh players for every match. A player
+ that can put itself back in its starting state opts in by overriding
+ Player.reset() to do so and return true; after its match it is parked here
+ and handed out again for the next match of the same strategy on the same
+ thread. Players that don't override reset() return false, are dropped, and
+ each match gets a fresh one from makePlayer exactly as before.
+
+ Pools are per thread, so parallel workers never share an instance and need
+ no locking. At most MAX_IDLE instances per strategy are kept, enough for a
+ match seating three copies of one strategy.
+
+ When a strategy is replaced at its index (ThreePrisonersDilemma.addStrategy),
+ invalidate(which) bumps that index's generation; each thread drops its idle
+ players of an older generation the next time it asks for that index. */
+public class PlayerPool {
+
+    static final int MAX_IDLE = 3;
+
+    final ThreadLocal<ArrayDeque<ThreePrisonersDilemma.Player>[]> idle = new ThreadLocal<>();
+
+    // Generation of each index, and the generation of the idle players each thread holds for it.
+    volatile int[] generations = new int[0];
+    final ThreadLocal<int[]> held = new ThreadLocal<>();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ArrayDeque<ThreePrisonersDilemma.Player>[] idle(int numPlayers) {
+        ArrayDeque<ThreePrisonersDilemma.Player>[] stacks = idle.get();
+        if (stacks == null || stacks.length < numPlayers) {
+            ArrayDeque<ThreePrisonersDilemma.Player>[] grown = new ArrayDeque[numPlayers];
+            for (int p = 0; p < numPlayers; p++)
+                grown[p] = stacks != null && p < stacks.length ? stacks[p] : new ArrayDeque<>(MAX_IDLE);
+            idle.set(grown);
+            stacks = grown;
+        }
+        return stacks;
+    }
+
+    ThreePrisonersDilemma.Player acquire(ThreePrisonersDilemma engine, int which) {
+        ArrayDeque<ThreePrisonersDilemma.Player> stack = idle(engine.numPlayers)[which];
+        if (!current(which)) stack.clear();
+        ThreePrisonersDilemma.Player player = stack.poll();
+        return player != null ? player : engine.makePlayer(which);
+    }
+
+    // Returns a player after its match. Kept only if it resets itself and its strategy wasn't replaced.
+    void release(ThreePrisonersDilemma engine, int which, ThreePrisonersDilemma.Player player) {
+        player.rng = null;
+        if (!player.reset()) return;
+        ArrayDeque<ThreePrisonersDilemma.Player> stack = idle(engine.numPlayers)[which];
+        if (!current(which)) {
+            stack.clear();
+            return;
+        }
+        if (stack.size() < MAX_IDLE) stack.push(player);
+    }
+
+    // Drops the idle players of index `which` on every thread, e.g. after its strategy was replaced.
+    synchronized void invalidate(int which) {
+        int[] g = Arrays.copyOf(generations, Math.max(generations.length, which + 1));
+        g[which]++;
+        generations = g;
+    }
+
+    // Whether this thread's idle players for `which` are of its current generation; after a
+    // change, records the new generation, so the caller must drop them when this returns false.
+    boolean current(int which) {
+        int[] g = generations;
+        int generation = which < g.length ? g[which] : 0;
+        int[] mine = held.get();
+        if (mine == null || mine.length <= which) {
+            mine = mine == null ? new int[which + 1] : Arrays.copyOf(mine, which + 1);
+            held.set(mine);
+        }
+        if (mine[which] == generation) return true;
+        mine[which] = generation;
+        return false;
+    }
+
+    // Drops every idle player on the calling thread, e.g. after the roster changes.
+    void clear() {
+        idle.remove();
+        held.remove();
+    }
+}
@@ -0,0 +1,203 @@
+package com.company;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* A strategy played by an external process, over its stdin and stdout.
+
+ The process starts by printing "NAME <strategy name>". After that, the
+ engine writes lines that each hold a batch of commands separated by ';':
+
+   R <id> <n> [<my> <opp1> <opp2>]   choose an action for round n of match id,
+                                     given the actions of round n-1 (absent when n = 0)
+   E <id>                            match id is over; forget it
+
+ and the process answers every line that contained R commands with one line
+ of "<id> <action>" replies, also separated by ';', in any order. An id is a
+ seat in a match, so the process keeps each id's history itself from the
+ one round it is sent at a time, and round n = 0 always starts a fresh one.
+
+ Requests from every match in flight are batched: a writer thread sends
+ whatever has queued up since its last write as one line, and a reader
+ thread hands each reply to the seat waiting on it. Neither waits for the
+ other, so batches are pipelined and a slow reply doesn't hold up the next
+ write. A sequential tournament has one request in flight at a time; set
+ the engine's workers to play many matches at once and fill the batches.
+
+ ProcessStrategyStub is a small process speaking the protocol, for tests. */
+public class ProcessStrategy implements AutoCloseable {
+
+    final Process process;
+    final BufferedWriter toProcess;
+    final BufferedReader fromProcess;
+    final String name;
+    final Thread writer, reader;
+
+    final AtomicInteger nextId = new AtomicInteger();
+    final Map<Integer, Seat> waiting = new ConcurrentHashMap<>();
+    List<String> queued = new ArrayList<>(); // commands not yet sent, guarded by this
+    volatile String failure = null;
+
+    // Totals for judging how well requests were batched.
+    volatile long lines = 0, commands = 0;
+
+    public ProcessStrategy(List<String> command) throws IOException {
+        process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        toProcess = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.US_ASCII));
+        fromProcess = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII));
+        String hello = fromProcess.readLine();
+        if (hello == null || !hello.startsWith("NAME ")) {
+            process.destroy();
+            throw new IOException("Expected NAME from " + command + " but got " + hello);
+        }
+        name = hello.substring("NAME ".length()).trim();
+        writer = new Thread(this::writeLoop, "ProcessStrategy writer " + name);
+        reader = new Thread(this::readLoop, "ProcessStrategy reader " + name);
+        writer.setDaemon(true);
+        reader.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    // For ThreePrisonersDilemma.addStrategy.
+    StrategyLoader.Strategy strategy() {
+        return new StrategyLoader.Strategy(name, null, null, n -> new Seat());
+    }
+
+    // One player's seat in one match; at most one request of its own is in flight.
+    class Seat implements StrategyLoader.Decider {
+        int id = -1;
+        int action;
+        boolean answered;
+
+        public int decide(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+            if (n == 0 || id < 0) id = nextId.getAndIncrement();
+            String request = n == 0 ? "R " + id + " 0"
+                    : "R " + id + " " + n + " " + myHistory[n-1] + " " + oppHistory1[n-1] + " " + oppHistory2[n-1];
+            synchronized (this) {
+                answered = false;
+            }
+            waiting.put(id, this);
+            send(request);
+            synchronized (this) {
+                while (!answered && failure == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        waiting.remove(id);
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted waiting for " + name, e);
+                    }
+                }
+                if (!answered) throw new IllegalStateException(name + ": " + failure);
+                return action;
+            }
+        }
+
+        synchronized void answer(int a) {
+            action = a;
+            answered = true;
+            notifyAll();
+        }
+
+        public void matchEnded() {
+            if (id >= 0) send("E " + id);
+            id = -1;
+        }
+    }
+
+    void send(String command) {
+        synchronized (this) {
+            if (failure != null) throw new IllegalStateException(name + ": " + failure);
+            queued.add(command);
+            if (queued.size() == 1) notifyAll();
+        }
+    }
+
+    void writeLoop() {
+        List<String> batch = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (queued.isEmpty() && failure == null) wait();
+                    if (failure != null) return;
+                    // Swap lists so senders can queue the next batch while this one is written.
+                    List<String> t = queued;
+                    queued = batch;
+                    batch = t;
+                }
+                line.setLength(0);
+                for (String command : batch) {
+                    if (line.length() > 0) line.append(';');
+                    line.append(command);
+                }
+                toProcess.write(line.toString());
+                toProcess.newLine();
+                toProcess.flush();
+                lines++;
+                commands += batch.size();
+                batch.clear();
+            }
+        } catch (IOException e) {
+            fail("write failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            fail("writer interrupted");
+        }
+    }
+
+    void readLoop() {
+        try {
+            String line;
+            while ((line = fromProcess.readLine()) != null) {
+                for (String reply : line.split(";")) {
+                    String[] parts = reply.trim().split(" ");
+                    Seat seat = parts.length == 2 ? waiting.remove(Integer.parseInt(parts[0])) : null;
+                    int action = parts.length == 2 ? Integer.parseInt(parts[1]) : -1;
+                    if (seat == null || (action != 0 && action != 1)) {
+                        fail("bad reply \"" + reply + "\"");
+                        return;
+                    }
+                    seat.answer(action);
+                }
+            }
+            fail("process exited");
+        } catch (IOException | NumberFormatException e) {
+            fail("read failed: " + e.getMessage());
+        }
+    }
+
+    // Stops the protocol and wakes every waiting seat, which then throws.
+    void fail(String reason) {
+        synchronized (this) {
+            if (failure == null) failure = reason;
+            notifyAll();
+        }
+        for (Seat seat : waiting.values())
+            synchronized (seat) {
+                seat.notifyAll();
+            }
+    }
+
+    // Closes the process's stdin, which tells it to exit, and kills it if it doesn't.
+    public void close() throws IOException {
+        fail("closed");
+        toProcess.close();
+        try {
+            if (!process.waitFor(5, TimeUnit.SECONDS)) process.destroyForcibly();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.company;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/* A stand-alone strategy process speaking ProcessStrategy's protocol, for tests.
+
+   java -cp <classes> com.company.ProcessStrategyStub [nice|nasty|t4t] [delayMillis]
+
+ t4t (the default) cooperates first, then defects if either opponent
+ defected last round. delayMillis stalls every reply line, to imitate a slow
+ strategy and show the effect of batching. */
+public class ProcessStrategyStub {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String strategy = args.length > 0 ? args[0] : "t4t";
+        long delay = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.US_ASCII);
+        out.println("NAME Stub_" + strategy);
+        out.flush();
+
+        // Each match's last action by either opponent; all t4t needs.
+        Map<Integer, Integer> opponentsLast = new HashMap<>();
+        StringBuilder replies = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            replies.setLength(0);
+            for (String command : line.split(";")) {
+                String[] f = command.trim().split(" ");
+                int id = Integer.parseInt(f[1]);
+                if (f[0].equals("E")) {
+                    opponentsLast.remove(id);
+                    continue;
+                }
+                int n = Integer.parseInt(f[2]);
+                if (n == 0) opponentsLast.put(id, 0);
+                else opponentsLast.put(id, Integer.parseInt(f[4]) | Integer.parseInt(f[5]));
+                int action;
+                switch (strategy) {
+                    case "nice": action = 0; break;
+                    case "nasty": action = 1; break;
+                    case "t4t": action = opponentsLast.get(id); break;
+                    default: throw new IllegalArgumentException("Unknown stub strategy " + strategy);
+                }
+                if (replies.length() > 0) replies.append(';');
+                replies.append(id).append(' ').append(action);
+            }
+            if (replies.length() > 0) {
+                if (delay > 0) Thread.sleep(delay);
+                out.println(replies);
+                out.flush();
+            }
+        }
+    }
+}
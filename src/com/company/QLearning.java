@@ -0,0 +1,253 @@
+package com.company;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/* Tabular Q-learning for ThreePrisonersDilemma.QLearner, trained by self-play against the roster.
+
+ A state is the last `memory` rounds, each coded as the learner's action and
+ how many opponents defected (or "before the match"), plus a coarse bucket
+ of the learner's running lead over the better of its two opponents. With
+ the default memory of 2 that is 245 states. The reward for a round is its
+ payoff; the last round of a match is learned from in onMatchEnd, with no
+ next state to bootstrap from.
+
+ train() runs `actors` threads, each with its own engine, random stream and
+ copy of the table, playing the learner against two opponents drawn from
+ the roster. After every epoch the actors' tables are merged, each entry
+ weighted by how often its actor updated it that epoch, and the actors
+ continue from the merged table while exploration decays. Matches go
+ through payoffsOfMatch and the learner has a bounded lookback, so against
+ bounded opponents a match keeps only ring-buffer histories and the learner
+ allocates nothing per round.
+
+ A trained table is written with write() and read back with read(); pass
+ strategy(table) to ThreePrisonersDilemma.addStrategy to enter it, frozen,
+ in a tournament. */
+public class QLearning {
+
+    static final int NO_ROUND = 6;       // joint code for rounds before the match started
+    static final int JOINT_CODES = 7;    // my action * 3 + opponents defecting, or NO_ROUND
+    static final int LEAD_BUCKETS = 5;
+    static final int FILE_MAGIC = 0x51544231; // "QTB1"
+
+    static class Table {
+        final int memory;
+        final double[] q; // q[2 * state + action]
+
+        Table(int memory) {
+            if (memory < 1 || memory > 8) throw new IllegalArgumentException("memory must be 1..8: " + memory);
+            this.memory = memory;
+            int states = LEAD_BUCKETS;
+            for (int m = 0; m < memory; m++) states *= JOINT_CODES;
+            q = new double[2 * states];
+        }
+
+        int states() {
+            return q.length / 2;
+        }
+
+        // The state before round n. lead is the learner's payoff minus its better opponent's so far.
+        int state(int n, History my, History opp1, History opp2, long lead) {
+            int s = leadBucket(lead);
+            for (int m = 1; m <= memory; m++) {
+                int code = n - m < 0 ? NO_ROUND : my.get(n - m) * 3 + opp1.get(n - m) + opp2.get(n - m);
+                s = s * JOINT_CODES + code;
+            }
+            return s;
+        }
+
+        static int leadBucket(long lead) {
+            if (lead < -10) return 0;
+            if (lead < -2) return 1;
+            if (lead <= 2) return 2;
+            if (lead <= 10) return 3;
+            return 4;
+        }
+
+        // Greedy action, cooperating on ties (e.g. in states never visited).
+        int best(int state) {
+            return q[2 * state + 1] > q[2 * state] ? 1 : 0;
+        }
+
+        double max(int state) {
+            return Math.max(q[2 * state], q[2 * state + 1]);
+        }
+
+        Table copy() {
+            Table t = new Table(memory);
+            System.arraycopy(q, 0, t.q, 0, q.length);
+            return t;
+        }
+
+        void write(Path file) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(memory);
+                out.writeInt(q.length);
+                for (double v : q) out.writeDouble(v);
+            }
+        }
+
+        static Table read(Path file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != FILE_MAGIC) throw new IOException(file + " is not a Q-table");
+                Table t = new Table(in.readInt());
+                if (in.readInt() != t.q.length) throw new IOException(file + ": table size doesn't match its memory");
+                for (int e = 0; e < t.q.length; e++) t.q[e] = in.readDouble();
+                return t;
+            }
+        }
+    }
+
+    // Settings for train().
+    static class Settings {
+        int memory = 2;
+        long matches = 1_000_000;
+        int actors = Runtime.getRuntime().availableProcessors();
+        int epochs = 50;
+        double alpha = 0.05, gamma = 0.95;
+        double epsilonStart = 0.2, epsilonEnd = 0.01;
+        long seed = 1;
+        int[] opponents = null; // roster indices to train against; null means every built-in strategy
+    }
+
+    // Enters a frozen table in a tournament via ThreePrisonersDilemma.addStrategy.
+    static StrategyLoader.Strategy strategy(Table table) {
+        return new StrategyLoader.Strategy("QLearner", engine -> engine.new QLearner(table));
+    }
+
+    static Table train(Settings settings, PrintStream out) {
+        int[] opponents = settings.opponents;
+        if (opponents == null) {
+            opponents = new int[ThreePrisonersDilemma.BUILT_IN_PLAYERS];
+            for (int p = 0; p < opponents.length; p++) opponents[p] = p;
+        }
+        Table shared = new Table(settings.memory);
+        List<Actor> actors = new ArrayList<>();
+        for (int a = 0; a < settings.actors; a++)
+            actors.add(new Actor(shared, settings, opponents, settings.seed * 0x9E3779B97F4A7C15L + a));
+        long perEpoch = Math.max(1, settings.matches / ((long) settings.epochs * settings.actors));
+
+        ExecutorService pool = Executors.newFixedThreadPool(settings.actors);
+        try {
+            for (int epoch = 0; epoch < settings.epochs; epoch++) {
+                double progress = settings.epochs > 1 ? (double) epoch / (settings.epochs - 1) : 1;
+                double epsilon = settings.epsilonStart + (settings.epsilonEnd - settings.epsilonStart) * progress;
+                long start = System.nanoTime();
+                List<Future<?>> running = new ArrayList<>();
+                for (Actor actor : actors) {
+                    actor.start(shared, epsilon);
+                    running.add(pool.submit(() -> actor.play(perEpoch)));
+                }
+                for (Future<?> f : running) f.get();
+                merge(shared, actors);
+                if (out != null && (epoch % 10 == 9 || epoch == settings.epochs - 1)) {
+                    double reward = 0;
+                    for (Actor actor : actors) reward += actor.rewardPerRound();
+                    out.println(String.format("epoch %d: epsilon %.3f, mean payoff %.3f per round, %.0f matches/s",
+                            epoch + 1, epsilon, reward / actors.size(),
+                            perEpoch * actors.size() / ((System.nanoTime() - start) / 1e9)));
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Training failed", e);
+        } finally {
+            pool.shutdown();
+        }
+        return shared;
+    }
+
+    // Each entry becomes the update-weighted mean of the actors' entries; unvisited ones keep their value.
+    static void merge(Table shared, List<Actor> actors) {
+        for (int e = 0; e < shared.q.length; e++) {
+            double sum = 0;
+            long weight = 0;
+            for (Actor actor : actors) {
+                sum += actor.learner.table.q[e] * actor.learner.updates[e];
+                weight += actor.learner.updates[e];
+            }
+            if (weight > 0) shared.q[e] = sum / weight;
+        }
+    }
+
+    // One training thread: its own engine (and so its own pooled opponents), random stream and table.
+    static class Actor {
+        final ThreePrisonersDilemma engine = new ThreePrisonersDilemma();
+        final Random rng;
+        final int[] opponents;
+        final ThreePrisonersDilemma.QLearner learner;
+        long rounds;
+        double reward;
+
+        Actor(Table shared, Settings settings, int[] opponents, long seed) {
+            this.rng = new Random(seed);
+            this.opponents = opponents;
+            engine.verbose = false;
+            learner = engine.new QLearner(shared.copy());
+            learner.alpha = settings.alpha;
+            learner.gamma = settings.gamma;
+            learner.updates = new int[shared.q.length];
+            learner.rng = rng;
+        }
+
+        void start(Table shared, double epsilon) {
+            System.arraycopy(shared.q, 0, learner.table.q, 0, shared.q.length);
+            Arrays.fill(learner.updates, 0);
+            learner.epsilon = epsilon;
+            rounds = 0;
+            reward = 0;
+        }
+
+        void play(long matches) {
+            for (long m = 0; m < matches; m++) {
+                int j = opponents[rng.nextInt(opponents.length)], k = opponents[rng.nextInt(opponents.length)];
+                ThreePrisonersDilemma.Player B = engine.acquirePlayer(j), C = engine.acquirePlayer(k);
+                B.rng = rng;
+                C.rng = rng;
+                int length = ThreePrisonersDilemma.MIN_ROUNDS + rng.nextInt(ThreePrisonersDilemma.MAX_ROUNDS - ThreePrisonersDilemma.MIN_ROUNDS + 1);
+                learner.reset();
+                long[] payoffs = engine.payoffsOfMatch(learner, B, C, length);
+                engine.pool.release(engine, j, B);
+                engine.pool.release(engine, k, C);
+                rounds += length;
+                reward += payoffs[0];
+            }
+        }
+
+        double rewardPerRound() {
+            return rounds > 0 ? reward / rounds : 0;
+        }
+    }
+
+    // Usage: QLearning <matches> <output table> [memory] [actors]
+    public static void main(String[] args) throws IOException {
+        Settings settings = new Settings();
+        if (args.length > 0) settings.matches = Long.parseLong(args[0]);
+        Path file = Paths.get(args.length > 1 ? args[1] : "qlearner.qtb");
+        if (args.length > 2) settings.memory = Integer.parseInt(args[2]);
+        if (args.length > 3) settings.actors = Integer.parseInt(args[3]);
+        Table table = train(settings, System.out);
+        table.write(file);
+        System.out.println("Wrote " + table.states() + " states to " + file);
+
+        ThreePrisonersDilemma engine = new ThreePrisonersDilemma();
+        engine.verbose = false;
+        engine.addStrategy(strategy(Table.read(file)));
+        engine.runTournament();
+    }
+}
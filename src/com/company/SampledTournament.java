@@ -0,0 +1,233 @@
+package com.company;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/* Tournaments that play only a fraction of the round robin's C(n+2,3) triples.
+
+ uniform() samples triples uniformly (with replacement) and scales each
+ strategy's summed scores by N/M, an unbiased estimate of its full round robin
+ total. stratified() does the same within each stratum of triples sharing a
+ smallest index, allocating samples in proportion to stratum size, which
+ removes the between-strata part of the variance. Both report a standard
+ error per strategy from the sample itself.
+
+ swiss() is for ranking rather than estimating: each round, strategies are
+ sorted by their running mean score and neighbours in that order are seated
+ together, so rounds cost O(n) matches and close rivals meet each other
+ often. The third seat of every match is drawn from the whole roster, which
+ keeps each strategy's mean anchored to the field rather than to its own
+ score band. The estimate of the round robin total is the mean score per seat
+ times the (n+1)(n+2)/2 seats each strategy fills in a round robin; the
+ reported error covers sampling noise only, not the bias of who meets whom.
+
+ Sampled matches are played with engine.sampleTriple, so they stay out of the
+ engine's matchLog, scoreTensor and metrics, which describe round robins.
+ With common random numbers, each draw plays on a repetition of its own
+ (see draw()), so a triple drawn twice is two independent matches, as the
+ standard errors assume, rather than the same match replayed.
+
+ validate() plays the full round robin (small rosters only) and reports how far
+ an estimate actually was from it. */
+public class SampledTournament {
+
+    static class Estimate {
+        String mode;
+        String[] names;
+        double[] total;     // estimated round robin total per strategy
+        double[] stdError;
+        long matches;
+        long roundRobinMatches;
+    }
+
+    static Estimate uniform(ThreePrisonersDilemma engine, long samples, long seed) {
+        int n = engine.numPlayers;
+        TripleIndex index = new TripleIndex(n);
+        SplittableRandom rng = new SplittableRandom(seed);
+        Stratum all = new Stratum(n);
+        int[] ijk = new int[3];
+        for (long s = 0; s < samples; s++) {
+            index.unrank(rng.nextLong(index.size()), ijk);
+            all.add(ijk, draw(engine, s, ijk));
+        }
+        Estimate e = newEstimate("uniform sample", engine, index, samples);
+        all.addTo(e, index.size());
+        finish(e);
+        return e;
+    }
+
+    static Estimate stratified(ThreePrisonersDilemma engine, long samples, long seed) {
+        int n = engine.numPlayers;
+        TripleIndex index = new TripleIndex(n);
+        SplittableRandom rng = new SplittableRandom(seed);
+        Estimate e = newEstimate("stratified sample", engine, index, 0);
+        int[] ijk = new int[3];
+        long drawn = 0;
+        for (int i = 0; i < n; i++) {
+            long size = index.stratumSize(i);
+            // Proportional allocation, but at least two per stratum so its variance can be estimated.
+            long m = Math.max(2, Math.round((double) samples * size / index.size()));
+            long first = index.rank(i, i, i);
+            Stratum stratum = new Stratum(n);
+            for (long s = 0; s < m; s++) {
+                index.unrank(first + rng.nextLong(size), ijk);
+                stratum.add(ijk, draw(engine, drawn++, ijk));
+            }
+            stratum.addTo(e, size);
+            e.matches += m;
+        }
+        finish(e);
+        return e;
+    }
+
+    static Estimate swiss(ThreePrisonersDilemma engine, int rounds, long seed) {
+        int n = engine.numPlayers;
+        if (n < 3) throw new IllegalArgumentException("Swiss scheduling needs at least three strategies");
+        TripleIndex index = new TripleIndex(n);
+        SplittableRandom rng = new SplittableRandom(seed);
+        double[] sum = new double[n], sumSq = new double[n];
+        long[] seats = new long[n];
+        double[] mean = new double[n];
+        long matches = 0;
+
+        int[] order = new int[n];
+        for (int p = 0; p < n; p++) order[p] = p;
+        for (int p = n - 1; p > 0; p--) { // random seating for the first round
+            int q = rng.nextInt(p + 1);
+            int t = order[p];
+            order[p] = order[q];
+            order[q] = t;
+        }
+        int[] triple = new int[3];
+        for (int r = 0; r < rounds; r++) {
+            if (r > 0) order = MonteCarlo.sortByMean(mean);
+            for (int g = 0; g < n; g += 2) {
+                // Neighbours in the ranking share a match, with a random third seat.
+                // A short last pair borrows the strategy ranked just above it.
+                int start = Math.min(g, n - 2);
+                triple[0] = order[start];
+                triple[1] = order[start + 1];
+                triple[2] = rng.nextInt(n);
+                Arrays.sort(triple);
+                double[] scores = draw(engine, matches++, triple);
+                for (int s = 0; s < 3; s++) {
+                    int p = triple[s];
+                    sum[p] += scores[s];
+                    sumSq[p] += scores[s] * scores[s];
+                    seats[p]++;
+                }
+            }
+            for (int p = 0; p < n; p++) mean[p] = sum[p] / seats[p];
+        }
+
+        Estimate e = newEstimate("swiss, " + rounds + " rounds", engine, index, matches);
+        double seatsInRoundRobin = (n + 1) * (n + 2) / 2.0;
+        for (int p = 0; p < n; p++) {
+            e.total[p] = mean[p] * seatsInRoundRobin;
+            double variance = seats[p] > 1 ? MonteCarlo.variance(sum[p], sumSq[p], (int) seats[p]) : 0;
+            e.stdError[p] = seatsInRoundRobin * Math.sqrt(variance / seats[p]);
+        }
+        return e;
+    }
+
+    // Plays the s-th draw of a sample. With common random numbers, engine repetition r becomes
+    // ((r >> 1) << 32 | s) << 1 | (r & 1) for the draw: distinct for every draw, and an antithetic
+    // pair of repetitions (2q, 2q + 1) still plays each draw against its complement.
+    static double[] draw(ThreePrisonersDilemma engine, long s, int[] ijk) {
+        long repetition = engine.repetition;
+        engine.repetition = ((repetition >>> 1) << 32 | s) << 1 | (repetition & 1);
+        try {
+            return engine.sampleTriple(ijk[0], ijk[1], ijk[2]);
+        } finally {
+            engine.repetition = repetition;
+        }
+    }
+
+    // Per-strategy sums of c_p(t), the scores strategy p took from sampled triple t, within one stratum.
+    static class Stratum {
+        final double[] sum, sumSq, current;
+        long samples;
+
+        Stratum(int n) {
+            sum = new double[n];
+            sumSq = new double[n];
+            current = new double[n];
+        }
+
+        void add(int[] ijk, double[] scores) {
+            samples++;
+            // A strategy may fill several seats of one triple; its c_p(t) is their sum.
+            for (int s = 0; s < 3; s++) current[ijk[s]] += scores[s];
+            for (int s = 0; s < 3; s++) {
+                int p = ijk[s];
+                if (s > 0 && ijk[s - 1] == p) continue; // i <= j <= k, so repeats are adjacent
+                double c = current[p];
+                sum[p] += c;
+                sumSq[p] += c * c;
+                current[p] = 0;
+            }
+        }
+
+        // Adds this stratum's estimate of each total (and its variance) to e, for a stratum of the given size.
+        void addTo(Estimate e, long size) {
+            double scale = (double) size / samples;
+            for (int p = 0; p < sum.length; p++) {
+                e.total[p] += scale * sum[p];
+                // Variance of c_p over all sampled triples, zeros included.
+                double mean = sum[p] / samples;
+                double variance = samples > 1 ? (sumSq[p] - samples * mean * mean) / (samples - 1) : 0;
+                e.stdError[p] += (double) size * size * Math.max(0, variance) / samples;
+            }
+        }
+    }
+
+    static Estimate newEstimate(String mode, ThreePrisonersDilemma engine, TripleIndex index, long matches) {
+        Estimate e = new Estimate();
+        e.mode = mode;
+        e.names = engine.playerNames();
+        e.total = new double[engine.numPlayers];
+        e.stdError = new double[engine.numPlayers];
+        e.matches = matches;
+        e.roundRobinMatches = index.size();
+        return e;
+    }
+
+    // Stratum.addTo accumulates variances; turn them into standard errors.
+    static void finish(Estimate e) {
+        for (int p = 0; p < e.stdError.length; p++) e.stdError[p] = Math.sqrt(e.stdError[p]);
+    }
+
+    static void print(Estimate e, PrintStream out) {
+        out.println("Estimated Results (" + e.mode + ", " + e.matches + " of " + e.roundRobinMatches + " matches)");
+        for (int p : MonteCarlo.sortByMean(e.total))
+            out.println(String.format("%s: %.3f +/- %.3f points.", e.names[p], e.total[p], e.stdError[p]));
+        out.println();
+    }
+
+    // Plays the full round robin and prints how far the estimate was from it.
+    static void validate(ThreePrisonersDilemma engine, Estimate e, PrintStream out) {
+        ScoreTally tally = engine.playTournament();
+        int n = tally.numPlayers();
+        double sumSq = 0, maxError = 0, covered = 0;
+        for (int p = 0; p < n; p++) {
+            double error = e.total[p] - tally.score(p);
+            sumSq += error * error;
+            maxError = Math.max(maxError, Math.abs(error));
+            if (Math.abs(error) <= MonteCarlo.Z95 * e.stdError[p]) covered++;
+        }
+        int[] estimated = MonteCarlo.sortByMean(e.total), actual = tally.sortedOrder();
+        int[] position = new int[n];
+        for (int r = 0; r < n; r++) position[actual[r]] = r;
+        long concordant = 0, discordant = 0;
+        for (int a = 0; a < n; a++)
+            for (int b = a + 1; b < n; b++)
+                if (position[estimated[a]] < position[estimated[b]]) concordant++;
+                else discordant++;
+        out.println("Against the full round robin (" + e.mode + "):");
+        out.println(String.format("  RMS error %.3f, max error %.3f, %.0f%% within the 95%% interval, Kendall tau %.3f",
+                Math.sqrt(sumSq / n), maxError, 100 * covered / n,
+                (double) (concordant - discordant) / Math.max(1, concordant + discordant)));
+        out.println();
+    }
+}
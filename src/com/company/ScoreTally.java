@@ -0,0 +1,100 @@
+package com.company;
+
+/* Exact score accumulator for a tournament.
+
+ A player's tournament score is the sum over its matches of the average payoff
+ per round of that match. Adding those averages up as floats loses precision
+ once a batch runs into millions of matches, so instead we keep the integer
+ payoff totals, bucketed by the length of the match they came from. The
+ average is only formed when a score is reported, and two tallies (e.g. from
+ different shards of a batch) can be merged exactly in any order. */
+public class ScoreTally {
+
+    final int numPlayers;
+    final int minRounds;
+    final int maxRounds;
+
+    // payoffTotals[p][r - minRounds] is the sum of p's payoffs over all of its
+    // matches that lasted exactly r rounds.
+    final long[][] payoffTotals;
+    final long[] matchCounts;
+    final long[] roundCounts;
+
+    public ScoreTally(int numPlayers, int minRounds, int maxRounds) {
+        if (minRounds < 1 || maxRounds < minRounds)
+            throw new IllegalArgumentException("Bad round range " + minRounds + ".." + maxRounds);
+        this.numPlayers = numPlayers;
+        this.minRounds = minRounds;
+        this.maxRounds = maxRounds;
+        this.payoffTotals = new long[numPlayers][maxRounds - minRounds + 1];
+        this.matchCounts = new long[numPlayers];
+        this.roundCounts = new long[numPlayers];
+    }
+
+    // Records one seat of one match: the player's payoff total over the given number of rounds.
+    public void add(int player, long payoffTotal, int rounds) {
+        if (rounds < minRounds || rounds > maxRounds)
+            throw new IllegalArgumentException("Match of " + rounds + " rounds outside " + minRounds + ".." + maxRounds);
+        payoffTotals[player][rounds - minRounds] += payoffTotal;
+        matchCounts[player]++;
+        roundCounts[player] += rounds;
+    }
+
+    // Adds another tally's totals into this one. Integer addition, so the result
+    // does not depend on the order shards are merged in.
+    public void merge(ScoreTally other) {
+        if (other.numPlayers != numPlayers || other.minRounds != minRounds || other.maxRounds != maxRounds)
+            throw new IllegalArgumentException("Cannot merge tallies of different shapes");
+        for (int p = 0; p < numPlayers; p++) {
+            for (int r = 0; r < payoffTotals[p].length; r++)
+                payoffTotals[p][r] += other.payoffTotals[p][r];
+            matchCounts[p] += other.matchCounts[p];
+            roundCounts[p] += other.roundCounts[p];
+        }
+    }
+
+    // Sum of per-match average payoffs for the player, the figure the tournament ranks by.
+    public double score(int player) {
+        double score = 0;
+        long[] totals = payoffTotals[player];
+        for (int r = 0; r < totals.length; r++)
+            if (totals[r] != 0)
+                score += (double) totals[r] / (r + minRounds);
+        return score;
+    }
+
+    public long payoffTotal(int player) {
+        long total = 0;
+        for (long t : payoffTotals[player]) total += t;
+        return total;
+    }
+
+    public long matches(int player) {
+        return matchCounts[player];
+    }
+
+    public long rounds(int player) {
+        return roundCounts[player];
+    }
+
+    public int numPlayers() {
+        return numPlayers;
+    }
+
+    // Player indices ordered by descending score. Ties keep index order.
+    public int[] sortedOrder() {
+        double[] scores = new double[numPlayers];
+        for (int i = 0; i < numPlayers; i++) scores[i] = score(i);
+        int[] sortedOrder = new int[numPlayers];
+        for (int i = 0; i < numPlayers; i++) {
+            int j = i - 1;
+            for (; j >= 0; j--) {
+                if (scores[i] > scores[sortedOrder[j]])
+                    sortedOrder[j + 1] = sortedOrder[j];
+                else break;
+            }
+            sortedOrder[j + 1] = i;
+        }
+        return sortedOrder;
+    }
+}
@@ -0,0 +1,294 @@
+package com.company;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/* Every triple's per-seat payoffs, in flat primitive cells indexed by TripleIndex, with queries.
+
+ The round robin plays each triple i <= j <= k once, so the tensor is stored
+ by triple rank t: cells 4t .. 4t+2 hold the payoff totals of the seats in
+ sorted order and cell 4t+3 the rounds played, 16 bytes a match and nothing
+ else. Small rosters keep the cells in an int[]; past OFF_HEAP_TRIPLES
+ (about 230 strategies) they go in direct buffers of CHUNK_INTS ints each,
+ off the Java heap, so a large tensor neither crowds the heap nor lengthens
+ GC pauses. Further tournaments (repetitions) add to the same cells, so
+ payoffs are per-round averages over all of them.
+
+ Queries:
+
+   payoff(f, a, b)        per-round payoff to an f seated with a and b,
+                          e.g. Mervyn with two NastyPlayers (identical
+                          seats are averaged together);
+   seatPayoff(i, j, k, s) the same for one seat of a triple as given;
+   marginal(f)            f's mean over every pair of partners it met
+                          (unlike the tournament score, a match with
+                          copies of f counts once);
+   conditional(f, a)      f's mean over the matches where a is one of its
+                          partners;
+   topPartners(f, k),     the k partners, and the k pairs of partners, with
+   topPairs(f, k)         which f does best.
+
+ payoff and seatPayoff read one triple's cells. The marginal and
+ conditional means come from per-strategy sums that are built once, in
+ parallel, on the first such query after the tensor changed, and are O(1)
+ after that; topPartners is then O(n log k) and topPairs O(n^2).
+
+ Set ThreePrisonersDilemma.scoreTensor to fill one as the matches are
+ played, or build one from a MatchLog. Workers of a parallel round robin
+ play disjoint triples, so they can share one tensor. */
+public class ScoreTensor {
+
+    static final long OFF_HEAP_TRIPLES = 1L << 21;
+    static final int CHUNK_BITS = 26;
+    static final int CHUNK_INTS = 1 << CHUNK_BITS; // 256 MB per direct buffer
+
+    final String[] names;
+    final TripleIndex index;
+    final int[] heap;         // the cells when on the heap, else null
+    final IntBuffer[] chunks; // the cells when off the heap, else null
+
+    // Per-strategy sums for the marginal and conditional queries; rebuilt when `version` moves on.
+    // add() bumps it after writing its cells, so sums built for a version include every add counted in it.
+    final AtomicLong version = new AtomicLong();
+    long summarised = -1;
+    double[] marginal;      // [f]
+    double[][] conditional; // [f][a]
+
+    public ScoreTensor(String[] names) {
+        this(names, TripleIndex.triples(names.length) > OFF_HEAP_TRIPLES);
+    }
+
+    public ScoreTensor(String[] names, boolean offHeap) {
+        this.names = names;
+        this.index = new TripleIndex(names.length);
+        long cells = 4 * index.size();
+        if (!offHeap) {
+            if (cells > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Roster too large for an on-heap score tensor: " + names.length);
+            heap = new int[(int) cells];
+            chunks = null;
+        } else {
+            heap = null;
+            chunks = new IntBuffer[(int) ((cells + CHUNK_INTS - 1) >>> CHUNK_BITS)];
+            for (int c = 0; c < chunks.length; c++) {
+                long ints = Math.min(CHUNK_INTS, cells - ((long) c << CHUNK_BITS));
+                chunks[c] = ByteBuffer.allocateDirect((int) ints * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        }
+    }
+
+    public int numPlayers() {
+        return names.length;
+    }
+
+    long cells() {
+        return 4 * index.size();
+    }
+
+    int get(long cell) {
+        return heap != null ? heap[(int) cell] : chunks[(int) (cell >>> CHUNK_BITS)].get((int) (cell & (CHUNK_INTS - 1)));
+    }
+
+    void set(long cell, int value) {
+        if (heap != null) heap[(int) cell] = value;
+        else chunks[(int) (cell >>> CHUNK_BITS)].put((int) (cell & (CHUNK_INTS - 1)), value);
+    }
+
+    // Adds match (i, j, k), whose seats may come in any order.
+    public void add(int i, int j, int k, int matchRounds, long[] matchPayoffs) {
+        int[] seat = {i, j, k};
+        long[] p = matchPayoffs.clone();
+        for (int a = 1; a < 3; a++)
+            for (int b = a; b > 0 && seat[b - 1] > seat[b]; b--) {
+                int s = seat[b]; seat[b] = seat[b - 1]; seat[b - 1] = s;
+                long q = p[b]; p[b] = p[b - 1]; p[b - 1] = q;
+            }
+        long base = 4 * index.rank(seat[0], seat[1], seat[2]);
+        for (int s = 0; s < 3; s++) set(base + s, Math.addExact(get(base + s), Math.toIntExact(p[s])));
+        set(base + 3, Math.addExact(get(base + 3), matchRounds));
+        version.incrementAndGet();
+    }
+
+    static ScoreTensor from(MatchLog log) {
+        ScoreTensor tensor = new ScoreTensor(log.names);
+        long[] p = new long[3];
+        for (int m = 0; m < log.size(); m++) {
+            for (int s = 0; s < 3; s++) p[s] = log.payoff(m, s);
+            tensor.add(log.seat(m, 0), log.seat(m, 1), log.seat(m, 2), log.rounds(m), p);
+        }
+        return tensor;
+    }
+
+    boolean played(int i, int j, int k) {
+        return rounds(i, j, k) > 0;
+    }
+
+    int rounds(int i, int j, int k) {
+        return get(4 * rank(i, j, k) + 3);
+    }
+
+    // Average payoff per round to a player of strategy `focal` whose opponents play a and b,
+    // or NaN if that triple was never played.
+    double payoff(int focal, int a, int b) {
+        int lo = Math.min(focal, Math.min(a, b)), hi = Math.max(focal, Math.max(a, b)), mid = focal + a + b - lo - hi;
+        long base = 4 * index.rank(lo, mid, hi);
+        int rounds = get(base + 3);
+        if (rounds == 0) return Double.NaN;
+        long sum = 0;
+        int seats = 0;
+        if (lo == focal) { sum += get(base); seats++; }
+        if (mid == focal) { sum += get(base + 1); seats++; }
+        if (hi == focal) { sum += get(base + 2); seats++; }
+        return (double) sum / ((long) seats * rounds);
+    }
+
+    // Average payoff per round to seat s (0..2) of the match with i, j and k seated in that
+    // order, or NaN if it was never played. Seats with the same strategy keep their order.
+    double seatPayoff(int i, int j, int k, int s) {
+        int[] seat = {i, j, k};
+        int focal = seat[s], before = 0;
+        for (int t = 0; t < s; t++) if (seat[t] == focal) before++;
+        Arrays.sort(seat);
+        long base = 4 * index.rank(seat[0], seat[1], seat[2]);
+        int rounds = get(base + 3);
+        if (rounds == 0) return Double.NaN;
+        int sorted = 0;
+        while (seat[sorted] != focal) sorted++;
+        return (double) get(base + sorted + before) / rounds;
+    }
+
+    // Mean per-round payoff of `focal` over the pairs of partners it met (NaN if none).
+    double marginal(int focal) {
+        return summaries().marginal[focal];
+    }
+
+    // Mean per-round payoff of `focal` over its matches with `partner` among its opponents.
+    double conditional(int focal, int partner) {
+        return summaries().conditional[focal][partner];
+    }
+
+    // The k partners with the highest conditional(focal, partner), best first.
+    int[] topPartners(int focal, int k) {
+        double[] row = summaries().conditional[focal];
+        k = Math.min(k, row.length);
+        int[] top = new int[k];
+        double[] value = new double[k];
+        int found = 0;
+        for (int a = 0; a < row.length; a++) {
+            if (Double.isNaN(row[a])) continue;
+            int at = found < k ? found++ : k;
+            while (at > 0 && value[at - 1] < row[a]) {
+                if (at < k) {
+                    top[at] = top[at - 1];
+                    value[at] = value[at - 1];
+                }
+                at--;
+            }
+            if (at < k) {
+                top[at] = a;
+                value[at] = row[a];
+            }
+        }
+        return Arrays.copyOf(top, found);
+    }
+
+    // The k pairs {a, b} (a <= b) with the highest payoff(focal, a, b), best first, as [pair][a, b].
+    int[][] topPairs(int focal, int k) {
+        int n = names.length;
+        k = (int) Math.min(k, TripleIndex.pairs(n));
+        int[][] top = new int[k][];
+        double[] value = new double[k];
+        int found = 0;
+        for (int a = 0; a < n; a++)
+            for (int b = a; b < n; b++) {
+                double v = payoff(focal, a, b);
+                if (Double.isNaN(v)) continue;
+                int at = found < k ? found++ : k;
+                while (at > 0 && value[at - 1] < v) {
+                    if (at < k) {
+                        top[at] = top[at - 1];
+                        value[at] = value[at - 1];
+                    }
+                    at--;
+                }
+                if (at < k) {
+                    top[at] = new int[]{a, b};
+                    value[at] = v;
+                }
+            }
+        return Arrays.copyOf(top, found);
+    }
+
+    // Builds the per-strategy sums if matches were added since they were last built.
+    synchronized ScoreTensor summaries() {
+        long v = version.get();
+        if (summarised == v) return this;
+        int n = names.length;
+        double[] m = new double[n];
+        double[][] c = new double[n][n];
+        IntStream.range(0, n).parallel().forEach(f -> {
+            double total = 0;
+            long matches = 0;
+            double[] sum = c[f];
+            int[] count = new int[n];
+            for (int a = 0; a < n; a++)
+                for (int b = a; b < n; b++) {
+                    double p = payoff(f, a, b);
+                    if (Double.isNaN(p)) continue;
+                    total += p;
+                    matches++;
+                    sum[a] += p;
+                    count[a]++;
+                    if (b != a) {
+                        sum[b] += p;
+                        count[b]++;
+                    }
+                }
+            m[f] = matches > 0 ? total / matches : Double.NaN;
+            for (int a = 0; a < n; a++) sum[a] = count[a] > 0 ? sum[a] / count[a] : Double.NaN;
+        });
+        marginal = m;
+        conditional = c;
+        summarised = v;
+        return this;
+    }
+
+    long rank(int i, int j, int k) {
+        int lo = Math.min(i, Math.min(j, k)), hi = Math.max(i, Math.max(j, k));
+        return index.rank(lo, i + j + k - lo - hi, hi);
+    }
+
+    int indexOf(String name) {
+        for (int p = 0; p < names.length; p++) if (names[p].equals(name)) return p;
+        throw new IllegalArgumentException("No strategy named " + name);
+    }
+
+    // Usage: ScoreTensor <results.csv> <strategy> [partner] [partner]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ScoreTensor <results.csv> <strategy> [partner] [partner]");
+            System.exit(2);
+        }
+        ScoreTensor tensor = from(MatchLog.read(Paths.get(args[0])));
+        int f = tensor.indexOf(args[1]);
+        if (args.length > 3) {
+            int a = tensor.indexOf(args[2]), b = tensor.indexOf(args[3]);
+            System.out.println(String.format("%s with %s and %s: %.3f per round", args[1], args[2], args[3], tensor.payoff(f, a, b)));
+        } else if (args.length > 2) {
+            int a = tensor.indexOf(args[2]);
+            System.out.println(String.format("%s with %s: %.3f per round", args[1], args[2], tensor.conditional(f, a)));
+        } else {
+            System.out.println(String.format("%s: %.3f per round overall", args[1], tensor.marginal(f)));
+            for (int a : tensor.topPartners(f, 5))
+                System.out.println(String.format("  with %s: %.3f", tensor.names[a], tensor.conditional(f, a)));
+            for (int[] pair : tensor.topPairs(f, 5))
+                System.out.println(String.format("  with %s and %s: %.3f", tensor.names[pair[0]], tensor.names[pair[1]],
+                        tensor.payoff(f, pair[0], pair[1])));
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.company;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/* Writes tournament statistics straight to an XLSX workbook or a directory of CSV files.
+
+ Three sheets:
+
+   Agents             the layout of the hand-made sum_of_agents.xlsx: each
+                      strategy's score in every run, its average, standard
+                      deviation and ranking;
+   Rank Distribution  how often each strategy finished in each place;
+   Triples            one row per triple of the score tensor: the three
+                      strategies, rounds, and each seat's payoff total and
+                      per-round average.
+
+ Rows are written as they are produced and nothing is kept per row, so
+ memory stays constant however many triples there are. An XLSX file is a
+ zip of XML parts; each sheet is one zip entry, written as a stream of
+ <row> elements with inline strings (no shared string table to hold in
+ memory), and the workbook parts that list the sheets come last. A sheet
+ that reaches Excel's 1,048,576 row limit continues on a new sheet with
+ the same header. CSV output puts each sheet in its own file. */
+public class SpreadsheetExport {
+
+    static final int XLSX_MAX_ROWS = 1 << 20;
+
+    // Where rows go. Cells are Numbers (NaN and infinities become empty cells) or Strings.
+    interface Sink extends Closeable {
+        void sheet(String name, Object... header) throws IOException;
+
+        void row(Object... cells) throws IOException;
+    }
+
+    // out ending in .xlsx gets a workbook; anything else is a directory for CSV files.
+    static Sink open(Path out) throws IOException {
+        return out.getFileName().toString().toLowerCase().endsWith(".xlsx") ? new Xlsx(out) : new Csv(out);
+    }
+
+    static class Xlsx implements Sink {
+        final ZipOutputStream zip;
+        final Writer out;
+        final List<String> sheets = new ArrayList<>();
+        String name;
+        Object[] header;
+        int rows;
+        int part;
+
+        Xlsx(Path file) throws IOException {
+            zip = new ZipOutputStream(Files.newOutputStream(file));
+            // The writer must not close the zip when a part ends.
+            out = new BufferedWriter(new OutputStreamWriter(new FilterOutputStream(zip) {
+                public void write(byte[] b, int off, int len) throws IOException {
+                    zip.write(b, off, len);
+                }
+
+                public void close() {
+                }
+            }, StandardCharsets.UTF_8));
+        }
+
+        public void sheet(String name, Object... header) throws IOException {
+            this.name = name;
+            this.header = header;
+            part = 1;
+            begin(name);
+        }
+
+        void begin(String title) throws IOException {
+            endSheet();
+            sheets.add(title);
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheets.size() + ".xml"));
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                    + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+            rows = 0;
+            if (header.length > 0) row(header);
+        }
+
+        void endSheet() throws IOException {
+            if (sheets.isEmpty()) return;
+            out.write("</sheetData></worksheet>");
+            out.flush();
+            zip.closeEntry();
+        }
+
+        public void row(Object... cells) throws IOException {
+            if (rows == XLSX_MAX_ROWS) begin(name + " (" + ++part + ")");
+            rows++;
+            out.write("<row r=\"" + rows + "\">");
+            for (int c = 0; c < cells.length; c++) {
+                Object v = cells[c];
+                String ref = column(c) + rows;
+                if (v instanceof Number) {
+                    double d = ((Number) v).doubleValue();
+                    if (Double.isNaN(d) || Double.isInfinite(d)) continue;
+                    out.write("<c r=\"" + ref + "\"><v>" + v + "</v></c>");
+                } else if (v != null) {
+                    out.write("<c r=\"" + ref + "\" t=\"inlineStr\"><is><t>");
+                    escape(v.toString());
+                    out.write("</t></is></c>");
+                }
+            }
+            out.write("</row>");
+        }
+
+        void escape(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                switch (ch) {
+                    case '&': out.write("&amp;"); break;
+                    case '<': out.write("&lt;"); break;
+                    case '>': out.write("&gt;"); break;
+                    default: if (ch >= 0x20 || ch == '\t' || ch == '\n' || ch == '\r') out.write(ch);
+                }
+            }
+        }
+
+        // Column letters for a 0-based index: A .. Z, AA ...
+        static String column(int c) {
+            StringBuilder sb = new StringBuilder();
+            for (c++; c > 0; c = (c - 1) / 26) sb.append((char) ('A' + (c - 1) % 26));
+            return sb.reverse().toString();
+        }
+
+        void part(String path, String xml) throws IOException {
+            zip.putNextEntry(new ZipEntry(path));
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+            out.write(xml);
+            out.flush();
+            zip.closeEntry();
+        }
+
+        public void close() throws IOException {
+            try {
+                endSheet();
+                StringBuilder types = new StringBuilder("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                        + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                        + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                        + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+                StringBuilder book = new StringBuilder("<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+                        + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+                StringBuilder rels = new StringBuilder("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+                for (int s = 1; s <= sheets.size(); s++) {
+                    types.append("<Override PartName=\"/xl/worksheets/sheet").append(s)
+                            .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+                    book.append("<sheet name=\"").append(sheetName(sheets.get(s - 1))).append("\" sheetId=\"").append(s)
+                            .append("\" r:id=\"rId").append(s).append("\"/>");
+                    rels.append("<Relationship Id=\"rId").append(s)
+                            .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+                            .append(s).append(".xml\"/>");
+                }
+                part("[Content_Types].xml", types.append("</Types>").toString());
+                part("_rels/.rels", "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                        + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" "
+                        + "Target=\"xl/workbook.xml\"/></Relationships>");
+                part("xl/workbook.xml", book.append("</sheets></workbook>").toString());
+                part("xl/_rels/workbook.xml.rels", rels.append("</Relationships>").toString());
+            } finally {
+                zip.close();
+            }
+        }
+
+        // Excel sheet names: at most 31 characters, none of []:*?/\ and XML-escaped here.
+        static String sheetName(String name) {
+            String s = name.replaceAll("[\\[\\]:*?/\\\\]", "_");
+            if (s.length() > 31) s = s.substring(0, 31);
+            return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+        }
+    }
+
+    static class Csv implements Sink {
+        final Path dir;
+        Writer out;
+
+        Csv(Path dir) throws IOException {
+            this.dir = Files.createDirectories(dir);
+        }
+
+        public void sheet(String name, Object... header) throws IOException {
+            close();
+            out = Files.newBufferedWriter(dir.resolve(name.toLowerCase().replaceAll("[^a-z0-9]+", "_") + ".csv"), StandardCharsets.UTF_8);
+            if (header.length > 0) row(header);
+        }
+
+        public void row(Object... cells) throws IOException {
+            for (int c = 0; c < cells.length; c++) {
+                if (c > 0) out.write(',');
+                Object v = cells[c];
+                if (v instanceof Number) {
+                    double d = ((Number) v).doubleValue();
+                    if (!Double.isNaN(d) && !Double.isInfinite(d)) out.write(v.toString());
+                } else if (v != null) {
+                    String s = v.toString();
+                    if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0)
+                        s = '"' + s.replace("\"", "\"\"") + '"';
+                    out.write(s);
+                }
+            }
+            out.write('\n');
+        }
+
+        public void close() throws IOException {
+            if (out != null) out.close();
+            out = null;
+        }
+    }
+
+    // scores is [run][player], e.g. from MonteCarlo.repeatedScores; tensor may be null.
+    static void export(Sink sink, String[] names, double[][] scores, ScoreTensor tensor) throws IOException {
+        int n = names.length, runs = scores.length;
+        int[][] rank = new int[runs][n];
+        for (int r = 0; r < runs; r++) {
+            int[] order = MonteCarlo.sortByMean(scores[r]);
+            for (int place = 0; place < n; place++) rank[r][order[place]] = place;
+        }
+        double[] average = new double[n], stdDev = new double[n];
+        for (int p = 0; p < n; p++) {
+            for (int r = 0; r < runs; r++) average[p] += scores[r][p] / runs;
+            for (int r = 0; r < runs; r++) stdDev[p] += (scores[r][p] - average[p]) * (scores[r][p] - average[p]);
+            stdDev[p] = runs > 1 ? Math.sqrt(stdDev[p] / (runs - 1)) : Double.NaN;
+        }
+        int[] ranking = new int[n];
+        int[] order = MonteCarlo.sortByMean(average);
+        for (int place = 0; place < n; place++) ranking[order[place]] = place + 1;
+
+        Object[] cells = new Object[runs + 4];
+        cells[0] = "Agent";
+        for (int r = 0; r < runs; r++) cells[r + 1] = "Match " + (r + 1) + " Score";
+        cells[runs + 1] = "Average Score";
+        cells[runs + 2] = "Std Dev";
+        cells[runs + 3] = "Ranking";
+        sink.sheet("Agents", cells);
+        for (int p : order) {
+            cells = new Object[runs + 4];
+            cells[0] = names[p];
+            for (int r = 0; r < runs; r++) cells[r + 1] = scores[r][p];
+            cells[runs + 1] = average[p];
+            cells[runs + 2] = stdDev[p];
+            cells[runs + 3] = ranking[p];
+            sink.row(cells);
+        }
+
+        cells = new Object[n + 1];
+        cells[0] = "Agent";
+        for (int place = 0; place < n; place++) cells[place + 1] = "P(rank " + (place + 1) + ")";
+        sink.sheet("Rank Distribution", cells);
+        for (int p : order) {
+            int[] finishes = new int[n];
+            for (int r = 0; r < runs; r++) finishes[rank[r][p]]++;
+            cells = new Object[n + 1];
+            cells[0] = names[p];
+            for (int place = 0; place < n; place++) cells[place + 1] = (double) finishes[place] / runs;
+            sink.row(cells);
+        }
+
+        if (tensor == null) return;
+        sink.sheet("Triples", "Agent A", "Agent B", "Agent C", "Rounds", "Payoff A", "Payoff B", "Payoff C",
+                "Per Round A", "Per Round B", "Per Round C");
+        int[] ijk = new int[3];
+        long size = tensor.index.size();
+        for (long t = 0; t < size; t++) {
+            int rounds = tensor.get(4 * t + 3);
+            if (rounds == 0) continue;
+            tensor.index.unrank(t, ijk);
+            int a = tensor.get(4 * t), b = tensor.get(4 * t + 1), c = tensor.get(4 * t + 2);
+            sink.row(names[ijk[0]], names[ijk[1]], names[ijk[2]], rounds, a, b, c,
+                    (double) a / rounds, (double) b / rounds, (double) c / rounds);
+        }
+    }
+
+    // Plays `runs` tournaments on common random numbers and exports them, with the score tensor of all runs.
+    static void run(ThreePrisonersDilemma engine, int runs, long seed, Path out) throws IOException {
+        engine.crn = new CommonRandomNumbers(seed, false);
+        if (engine.scoreTensor == null) engine.scoreTensor = new ScoreTensor(engine.playerNames());
+        double[][] scores = MonteCarlo.repeatedScores(engine, 0, runs);
+        try (Sink sink = open(out)) {
+            export(sink, engine.playerNames(), scores, engine.scoreTensor);
+        }
+    }
+
+    // Usage: SpreadsheetExport <out.xlsx | csv directory> [runs] [seed]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SpreadsheetExport <out.xlsx | csv directory> [runs] [seed]");
+            System.exit(2);
+        }
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        run(new ThreePrisonersDilemma(), runs, seed, Paths.get(args[0]));
+        System.out.println("Wrote " + args[0]);
+    }
+}
@@ -0,0 +1,307 @@
+package com.company;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/* Compiles contributed strategy files in-process and adds them to a running tournament.
+
+ Submissions are written as if pasted into ThreePrisonersDilemma: a file
+ like CHIONG_MERVYN_Player.java holds imports and a class extending Player
+ that may use payoff. Each file is wrapped, as written, in a generated
+ Submission class that supplies its own Player and payoff, compiled with the
+ system JavaCompiler, and defined in a class loader of its own, so
+ submissions can't see each other and a changed file simply gets a new
+ loader. The engine plays each one through an ExternalPlayer; register()
+ gives new strategies the indices after the built-in ones and swaps a
+ reloaded one in at its old index.
+
+ Compiled classes are cached by the SHA-256 of the source, in memory and,
+ if a cache directory is given, on disk, so re-registering an unchanged
+ directory compiles nothing. Submissions draw their own random numbers, so
+ CommonRandomNumbers doesn't reach them, and they may hang or throw like
+ any other code: run untrusted ones with a MatchWatchdog set. */
+public class StrategyLoader {
+
+    // Implemented by the generated Player class; the engine calls submissions through it.
+    // ProcessStrategy implements it too, to play a strategy running in another process.
+    public interface Decider {
+        int decide(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2);
+
+        default void matchEnded() {
+        }
+    }
+
+    static final String PACKAGE = "com.company.submissions";
+    static final String WRAPPER = "Submission";
+
+    // A top-level class extending Player, as submissions declare them.
+    static final Pattern STRATEGY = Pattern.compile("^(?:public\\s+|final\\s+)*class\\s+(\\w+)\\s+extends\\s+Player\\b", Pattern.MULTILINE);
+    static final Pattern IMPORT_OR_PACKAGE = Pattern.compile("^[ \\t]*(import|package)\\b[^;]*;", Pattern.MULTILINE);
+
+    // One strategy class from a submission, ready to make players. A ProcessStrategy
+    // has no source file, so its sourceHash and source are null. A strategy that is a
+    // Player already (e.g. a frozen QLearning table) has players instead of a factory.
+    static class Strategy {
+        final String name;
+        final String sourceHash;
+        final Path source;
+        final Function<String, Decider> factory;
+        final Function<ThreePrisonersDilemma, ThreePrisonersDilemma.Player> players;
+
+        Strategy(String name, String sourceHash, Path source, Function<String, Decider> factory) {
+            this.name = name;
+            this.sourceHash = sourceHash;
+            this.source = source;
+            this.factory = factory;
+            this.players = null;
+        }
+
+        Strategy(String name, Function<ThreePrisonersDilemma, ThreePrisonersDilemma.Player> players) {
+            this.name = name;
+            this.sourceHash = null;
+            this.source = null;
+            this.factory = null;
+            this.players = players;
+        }
+
+        Decider create() {
+            if (factory == null) throw new IllegalStateException(name + " is played as a Player, not through a Decider");
+            return factory.apply(name);
+        }
+
+        // How the engine seats this strategy.
+        ThreePrisonersDilemma.Player newPlayer(ThreePrisonersDilemma engine) {
+            return players != null ? players.apply(engine) : engine.new ExternalPlayer(this);
+        }
+    }
+
+    final Path cacheDir; // null keeps compiled classes in memory only
+    final Map<String, List<Strategy>> loaded = new HashMap<>();
+    int compiled = 0, cacheHits = 0;
+
+    public StrategyLoader(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    // The engine's payoff table, copied so a submission can't change the engine's.
+    public static int[][][] payoff() {
+        int[][][] copy = new int[2][2][];
+        for (int a = 0; a < 2; a++)
+            for (int b = 0; b < 2; b++) copy[a][b] = ThreePrisonersDilemma.payoff[a][b].clone();
+        return copy;
+    }
+
+    // Loads every *.java file in dir and registers its strategies with the engine. Returns how many were registered.
+    int register(ThreePrisonersDilemma engine, Path dir) throws IOException {
+        int count = 0;
+        for (Strategy s : loadDirectory(dir)) {
+            engine.addStrategy(s);
+            count++;
+        }
+        return count;
+    }
+
+    List<Strategy> loadDirectory(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.java")) {
+            for (Path file : stream) files.add(file);
+        }
+        Collections.sort(files); // stable indices across runs
+        List<Strategy> strategies = new ArrayList<>();
+        for (Path file : files) strategies.addAll(load(file));
+        return strategies;
+    }
+
+    List<Strategy> load(Path file) throws IOException {
+        String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        String hash = sha256(source);
+        List<Strategy> strategies = loaded.get(hash);
+        if (strategies != null) {
+            cacheHits++;
+            return strategies;
+        }
+        List<String> names = new ArrayList<>();
+        Matcher m = STRATEGY.matcher(source);
+        while (m.find()) names.add(m.group(1));
+        if (names.isEmpty()) throw new IllegalArgumentException(file + ": no class extending Player");
+
+        Map<String, byte[]> classes = cacheDir != null ? readCache(hash) : null;
+        if (classes == null) {
+            classes = compile(file, wrap(source, names));
+            compiled++;
+            if (cacheDir != null) writeCache(hash, classes);
+        } else {
+            cacheHits++;
+        }
+
+        Function<String, Decider> factory = instantiate(new SubmissionLoader(classes), file);
+        strategies = new ArrayList<>();
+        for (String name : names) strategies.add(new Strategy(name, hash, file, factory));
+        loaded.put(hash, strategies);
+        return strategies;
+    }
+
+    // The submission inside a generated wrapper. Imports stay where they are and the
+    // wrapper's header shares a line with the code after them, so compiler errors
+    // point at the submission's own line numbers.
+    static String wrap(String source, List<String> names) {
+        int bodyStart = 0;
+        Matcher m = IMPORT_OR_PACKAGE.matcher(source);
+        StringBuilder out = new StringBuilder("package " + PACKAGE + "; ");
+        int copied = 0;
+        while (m.find()) {
+            out.append(source, copied, m.start());
+            String statement = m.group();
+            // A package line of its own would clash with ours.
+            out.append(m.group(1).equals("package") ? " ".repeat(statement.length()) : statement);
+            copied = bodyStart = m.end();
+        }
+        out.append(source, copied, bodyStart);
+        out.append("public class " + WRAPPER + " implements java.util.function.Function<String, "
+                + Decider.class.getCanonicalName() + "> { ");
+        out.append("static int[][][] payoff = " + StrategyLoader.class.getName() + ".payoff(); ");
+        out.append(source.substring(bodyStart));
+        out.append("\nabstract class Player implements " + Decider.class.getCanonicalName() + " {\n"
+                + "    int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {\n"
+                + "        throw new RuntimeException(\"You need to override the selectAction method.\");\n"
+                + "    }\n"
+                + "    public final int decide(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {\n"
+                + "        return selectAction(n, myHistory, oppHistory1, oppHistory2);\n"
+                + "    }\n"
+                + "}\n");
+        out.append("public " + Decider.class.getCanonicalName() + " apply(String name) {\n    switch (name) {\n");
+        for (String name : names) out.append("        case \"" + name + "\": return new " + name + "();\n");
+        out.append("    }\n    throw new IllegalArgumentException(name);\n}\n}\n");
+        return out.toString();
+    }
+
+    static Map<String, byte[]> compile(Path file, String wrapped) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) throw new IllegalStateException("No Java compiler available; run on a JDK rather than a JRE");
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        JavaFileObject unit = new SimpleJavaFileObject(
+                URI.create("string:///" + PACKAGE.replace('.', '/') + "/" + WRAPPER + ".java"), JavaFileObject.Kind.SOURCE) {
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return wrapped;
+            }
+        };
+        ForwardingJavaFileManager<StandardJavaFileManager> manager = new ForwardingJavaFileManager<>(standard) {
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                       FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+                    public OutputStream openOutputStream() {
+                        return new ByteArrayOutputStream() {
+                            public void close() {
+                                classes.put(className, toByteArray());
+                            }
+                        };
+                    }
+                };
+            }
+        };
+        List<String> options = List.of("-classpath", System.getProperty("java.class.path"), "-nowarn");
+        boolean ok = compiler.getTask(null, manager, diagnostics, options, null, List.of(unit)).call();
+        if (!ok) {
+            StringBuilder message = new StringBuilder("Could not compile " + file + ":");
+            for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics())
+                if (d.getKind() == Diagnostic.Kind.ERROR)
+                    message.append("\n  line ").append(d.getLineNumber()).append(": ").append(d.getMessage(null));
+            throw new IllegalArgumentException(message.toString());
+        }
+        return classes;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Function<String, Decider> instantiate(SubmissionLoader loader, Path file) {
+        try {
+            Class<?> wrapper = loader.loadClass(PACKAGE + "." + WRAPPER);
+            return (Function<String, Decider>) wrapper.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not load the compiled " + file, e);
+        }
+    }
+
+    // Defines one submission's classes; everything else comes from the engine's loader.
+    static class SubmissionLoader extends ClassLoader {
+        final Map<String, byte[]> classes;
+
+        SubmissionLoader(Map<String, byte[]> classes) {
+            super(StrategyLoader.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) throw new ClassNotFoundException(name);
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    // Cached classes live in cacheDir/<hash>/<binary name>.class.
+    Map<String, byte[]> readCache(String hash) throws IOException {
+        Path dir = cacheDir.resolve(hash);
+        if (!Files.isDirectory(dir)) return null;
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.class")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                classes.put(name.substring(0, name.length() - ".class".length()), Files.readAllBytes(file));
+            }
+        }
+        return classes.isEmpty() ? null : classes;
+    }
+
+    void writeCache(String hash, Map<String, byte[]> classes) throws IOException {
+        // Written under a temporary name and moved into place, so a reader never sees half an entry.
+        Path dir = cacheDir.resolve(hash);
+        Files.createDirectories(cacheDir);
+        Path tmp = Files.createTempDirectory(cacheDir, hash + ".");
+        for (Map.Entry<String, byte[]> c : classes.entrySet()) Files.write(tmp.resolve(c.getKey() + ".class"), c.getValue());
+        try {
+            Files.move(tmp, dir);
+        } catch (IOException e) {
+            // Another process cached the same source first; its classes are identical.
+            for (Map.Entry<String, byte[]> c : classes.entrySet()) Files.deleteIfExists(tmp.resolve(c.getKey() + ".class"));
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    static String sha256(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
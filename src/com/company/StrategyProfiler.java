@@ -0,0 +1,164 @@
+package com.company;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Attributes the cost of each selectAction call to the Player subclass that made it.
+
+ Wall time is always recorded. CPU time and allocated bytes come from the
+ ThreadMXBean counters and are only read when switched on, as each read costs
+ far more than a typical selectAction call. Per-call wall times go into a
+ log2 histogram so the report can give percentiles without keeping samples.
+
+ To spot strategies that rescan their history every round, a least squares
+ line of cost against the round number n is kept per strategy. If the slope
+ accounts for most of the mean cost, the per-call cost grows with n.
+
+ A profiler is not thread safe; give each worker its own and merge them. */
+public class StrategyProfiler {
+
+    // Fraction of mean per-call cost explained by growth with n above which a strategy is flagged.
+    static final double GROWTH_THRESHOLD = 0.3;
+
+    final boolean measureCpu;
+    final boolean measureAllocation;
+    final java.lang.management.ThreadMXBean threads;
+    final com.sun.management.ThreadMXBean allocations;
+
+    final Map<String, Stats> stats = new HashMap<>();
+
+    public StrategyProfiler() {
+        this(false, false);
+    }
+
+    public StrategyProfiler(boolean measureCpu, boolean measureAllocation) {
+        threads = ManagementFactory.getThreadMXBean();
+        if (measureCpu && threads.isCurrentThreadCpuTimeSupported()) {
+            threads.setThreadCpuTimeEnabled(true);
+            this.measureCpu = true;
+        } else {
+            this.measureCpu = false;
+        }
+        if (measureAllocation && threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            allocations = (com.sun.management.ThreadMXBean) threads;
+            allocations.setThreadAllocatedMemoryEnabled(true);
+            this.measureAllocation = true;
+        } else {
+            allocations = null;
+            this.measureAllocation = false;
+        }
+    }
+
+    // Per-strategy counters. Looked up once per seat per match, then updated on every call.
+    static class Stats {
+        final String name;
+        long calls;
+        long wallNanos;
+        long cpuNanos;
+        long allocatedBytes;
+        final long[] histogram = new long[64]; // bucket b holds calls taking [2^b, 2^(b+1)) ns
+
+        // Running sums for the regression of wall time against n.
+        long fitted;
+        double sumN, sumNN, sumCost, sumNCost;
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void record(int n, long wall, long cpu, long bytes) {
+            calls++;
+            wallNanos += wall;
+            cpuNanos += cpu;
+            allocatedBytes += bytes;
+            histogram[63 - Long.numberOfLeadingZeros(Math.max(wall, 1))]++;
+            // Leave GC pauses and other outliers out of the fit, they swamp any trend.
+            if (fitted > 100 && wall > 8 * sumCost / fitted) return;
+            sumN += n;
+            sumNN += (double) n * n;
+            sumCost += wall;
+            sumNCost += (double) n * wall;
+            fitted++;
+        }
+
+        void merge(Stats other) {
+            calls += other.calls;
+            wallNanos += other.wallNanos;
+            cpuNanos += other.cpuNanos;
+            allocatedBytes += other.allocatedBytes;
+            for (int b = 0; b < histogram.length; b++) histogram[b] += other.histogram[b];
+            sumN += other.sumN;
+            sumNN += other.sumNN;
+            sumCost += other.sumCost;
+            sumNCost += other.sumNCost;
+            fitted += other.fitted;
+        }
+
+        double meanWall() {
+            return calls == 0 ? 0 : (double) wallNanos / calls;
+        }
+
+        // Upper bound of the histogram bucket holding the q-th quantile, in ns.
+        long percentile(double q) {
+            long target = (long) Math.ceil(q * calls), seen = 0;
+            for (int b = 0; b < histogram.length; b++) {
+                seen += histogram[b];
+                if (seen >= target && seen > 0) return 1L << (b + 1);
+            }
+            return 0;
+        }
+
+        // Share of the mean cost accounted for by the fitted slope against n.
+        double growth() {
+            if (fitted < 2) return 0;
+            double meanN = sumN / fitted, meanCost = sumCost / fitted;
+            double varN = sumNN / fitted - meanN * meanN;
+            if (varN <= 0 || meanCost <= 0) return 0;
+            double slope = (sumNCost / fitted - meanN * meanCost) / varN;
+            return slope * meanN / meanCost;
+        }
+    }
+
+    Stats statsFor(ThreePrisonersDilemma.Player player) {
+        return stats.computeIfAbsent(player.name(), Stats::new);
+    }
+
+    // Calls player.selectAction and charges its cost to the given stats.
+    int selectAction(Stats s, ThreePrisonersDilemma.Player player, int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        long bytes0 = measureAllocation ? allocations.getCurrentThreadAllocatedBytes() : 0;
+        long cpu0 = measureCpu ? threads.getCurrentThreadCpuTime() : 0;
+        long wall0 = System.nanoTime();
+        int action = player.selectAction(n, myHistory, oppHistory1, oppHistory2);
+        long wall = System.nanoTime() - wall0;
+        long cpu = measureCpu ? threads.getCurrentThreadCpuTime() - cpu0 : 0;
+        long bytes = measureAllocation ? allocations.getCurrentThreadAllocatedBytes() - bytes0 : 0;
+        s.record(n, wall, cpu, bytes);
+        return action;
+    }
+
+    public void merge(StrategyProfiler other) {
+        for (Stats s : other.stats.values())
+            stats.computeIfAbsent(s.name, Stats::new).merge(s);
+    }
+
+    public void printReport(PrintStream out) {
+        List<Stats> ranked = new ArrayList<>(stats.values());
+        ranked.sort((a, b) -> Long.compare(b.wallNanos, a.wallNanos));
+        out.println("Strategy Cost Report");
+        out.println(String.format("%-30s %10s %10s %9s %9s %10s %10s %7s",
+                "strategy", "calls", "total ms", "ns/call", "p99 ns", "cpu ns/c", "bytes/c", "growth"));
+        for (Stats s : ranked) {
+            out.println(String.format("%-30s %10d %10.2f %9.0f %9d %10s %10s %7.2f%s",
+                    s.name, s.calls, s.wallNanos / 1e6, s.meanWall(), s.percentile(0.99),
+                    measureCpu ? String.format("%.0f", (double) s.cpuNanos / s.calls) : "-",
+                    measureAllocation ? String.format("%.1f", (double) s.allocatedBytes / s.calls) : "-",
+                    s.growth(), s.growth() > GROWTH_THRESHOLD ? "  <- cost grows with n" : ""));
+        }
+        out.println();
+    }
+}
@@ -2,6 +2,7 @@
 package com.company;
 
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 public class ThreePrisonersDilemma {
 	/*
 	 This Java program models the two-player Prisoner's Dilemma game.
@@ -35,15 +36,78 @@ public class ThreePrisonersDilemma {
 	 opponent did) and must compute the next action.  */
 
 
+    static final int UNBOUNDED = -1;
+
     abstract class Player {
         // This procedure takes in the number of rounds elapsed so far (n), and
         // the previous plays in the match, and returns the appropriate action.
         int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
-            throw new RuntimeException("You need to override the selectAction method.");
+            if (lookback() == UNBOUNDED) throw new RuntimeException("You need to override the selectAction method.");
+            if (myView == null) {
+                myView = new History.Array();
+                oppView1 = new History.Array();
+                oppView2 = new History.Array();
+            }
+            return selectAction(n, myView.over(myHistory), oppView1.over(oppHistory1), oppView2.over(oppHistory2));
+        }
+
+        // How many rounds back selectAction ever looks: at round n it reads nothing older
+        // than round n - lookback(). A player that returns a bound implements the History
+        // form of selectAction instead, and its matches keep only that many rounds (see History).
+        // A subclass that goes back to overriding the int[] form must return UNBOUNDED again.
+        int lookback() {
+            return UNBOUNDED;
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
+            throw new RuntimeException("A player with a bounded lookback needs to override the History selectAction method.");
+        }
+
+        History.Array myView, oppView1, oppView2;
+
+        // Set by a strategy that wants the engine to keep an n-gram model of its opponents.
+        OpponentModel opponentModel = null;
+
+        // Set by a strategy that wants the engine to fingerprint its opponents against the roster.
+        Fingerprinter fingerprinter = null;
+
+        // Source of randomness for this player. The engine sets it when runs have to be
+        // reproducible or share random streams (see CommonRandomNumbers); otherwise
+        // players draw from Math.random() as before.
+        Random rng = null;
+
+        double random() {
+            return rng != null ? rng.nextDouble() : Math.random();
+        }
+
+        Random randomGenerator() {
+            return rng != null ? rng : ThreadLocalRandom.current();
+        }
+
+        // Called before the first round of every match, after rng is set.
+        void onMatchStart() {
         }
 
-        // Used to extract the name of this player class.
-        final String name() {
+        // Called after the last round of a match that ran to completion.
+        void onMatchEnd() {
+        }
+
+        // The same, with the last round's actions as this player saw them (-1 if no round was
+        // played), for a player that learns from how the match ended. Calls onMatchEnd().
+        void onMatchEnd(int myLast, int oppLast1, int oppLast2) {
+            onMatchEnd();
+        }
+
+        // Called after a match when the engine pools players (see PlayerPool). A player
+        // that can restore the state it was constructed with does so and returns true,
+        // and is reused for a later match; returning false gets a fresh instance instead.
+        boolean reset() {
+            return false;
+        }
+
+        // Used to extract the name of this player class. Overridden only by
+        // ExternalPlayer, which stands in for a class loaded at run time.
+        String name() {
             String result = getClass().getName();
             return result.substring(result.indexOf('$')+1);
         }
@@ -53,74 +117,112 @@ public class ThreePrisonersDilemma {
 
     class NicePlayer extends Player {
         //NicePlayer always cooperates
-        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        int lookback() {
+            return 0;
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
             return 0;
         }
+
+        boolean reset() {
+            return true; // stateless
+        }
     }
     class NastyPlayer extends Player {
         //NastyPlayer always defects
-        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        int lookback() {
+            return 0;
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
             return 1;
         }
+
+        boolean reset() {
+            return true; // stateless
+        }
     }
     class RandomPlayer extends Player {
         //RandomPlayer randomly picks his action each time
-        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
-            if (Math.random() < 0.5)
+        int lookback() {
+            return 0;
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
+            if (random() < 0.5)
                 return 0;  //cooperates half the time
             else
                 return 1;  //defects half the time
         }
+
+        boolean reset() {
+            return true; // stateless
+        }
     }
     class TolerantPlayer extends Player {
         //TolerantPlayer looks at his opponents' histories, and only defects
         //if at least half of the other players' actions have been defects
-        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
-            int opponentCoop = 0;
-            int opponentDefect = 0;
-            for (int i=0; i<n; i++) {
-                if (oppHistory1[i] == 0)
-                    opponentCoop = opponentCoop + 1;
-                else
-                    opponentDefect = opponentDefect + 1;
-            }
-            for (int i=0; i<n; i++) {
-                if (oppHistory2[i] == 0)
-                    opponentCoop = opponentCoop + 1;
-                else
-                    opponentDefect = opponentDefect + 1;
-            }
+        int lookback() {
+            return 0; // only the running counts
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
+            int opponentCoop = oppHistory1.cooperations() + oppHistory2.cooperations();
+            int opponentDefect = oppHistory1.defections() + oppHistory2.defections();
             if (opponentDefect > opponentCoop)
                 return 1;
             else
                 return 0;
         }
+
+        boolean reset() {
+            return true; // stateless
+        }
     }
     class FreakyPlayer extends Player {
         //FreakyPlayer determines, at the start of the match,
         //either to always be nice or always be nasty.
-        //Note that this class has a non-trivial constructor.
+        //The choice is made when the match starts rather than in the constructor,
+        //so that it comes from the random stream the engine hands the player.
         int action;
-        FreakyPlayer() {
-            if (Math.random() < 0.5)
+
+        void onMatchStart() {
+            if (random() < 0.5)
                 action = 0;  //cooperates half the time
             else
                 action = 1;  //defects half the time
         }
 
-        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        int lookback() {
+            return 0;
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
             return action;
         }
+
+        boolean reset() {
+            return true; // action is drawn again by onMatchStart
+        }
     }
     class T4TPlayer extends Player {
         //Picks a random opponent at each play,
         //and uses the 'tit-for-tat' strategy against them
-        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        int lookback() {
+            return 1;
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
             if (n==0) return 0; //cooperate by default
-            if (Math.random() < 0.5)
-                return oppHistory1[n-1];
+            if (random() < 0.5)
+                return oppHistory1.get(n-1);
             else
-                return oppHistory2[n-1];
+                return oppHistory2.get(n-1);
+        }
+
+        boolean reset() {
+            return true; // stateless
         }
     }
 
@@ -136,35 +238,48 @@ public class ThreePrisonersDilemma {
          would not be better than t4t or always defect, should deter agianst a small number of always coooperate (nice player)
          Quite obviouslt prober did pretty bad
          */
-        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        int lookback() {
+            return 2; // rounds 1 and 2, read on round 3
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
             if (n==0) return 1; //Start with Defect
             else if (n==1) return 0; //Cooperate
             else if (n==2) return 0; //Cooperate
-            else if (n == 3 && oppHistory1[1] ==0 && oppHistory1[2] ==0){
+            else if (n == 3 && oppHistory1.get(1) ==0 && oppHistory1.get(2) ==0){
                 return 1;
             }
-            else if (n == 3 && oppHistory2[1] ==0 && oppHistory2[2] ==0){
+            else if (n == 3 && oppHistory2.get(1) ==0 && oppHistory2.get(2) ==0){
                 return 1;
             }
             else{
-                if (oppHistory1[n-1] == 1)
-                    return oppHistory1[n-1];
+                if (oppHistory1.get(n-1) == 1)
+                    return oppHistory1.get(n-1);
                 else
-                    return oppHistory2[n-1];
+                    return oppHistory2.get(n-1);
             }
         }
+
+        boolean reset() {
+            return true; // stateless
+        }
     }
     class ADAPTIVE extends Player {
         //Starts off C, C, C, C, C, C, D, D, D, D, D,
         //then takes choices which have given the best average score re-calculated after every move
 
-        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        int lookback() {
+            return 10;
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
             int total=0;
             int mean=0;
             if (n<=5) return 0; //cooperate for first 5
             else if (n>5 && n<=10) return 1;//defect until 10
             else{ //when n =11
-                total=total+ payoff[myHistory[n-10]][oppHistory1[n-10]][oppHistory2[n-10]] + payoff[oppHistory1[n-10]][myHistory[n-10]][oppHistory2[n-10]] + payoff[oppHistory2[n-10]][oppHistory1[n-10]][myHistory[n-10]];
+                int my = myHistory.get(n-10), opp1 = oppHistory1.get(n-10), opp2 = oppHistory2.get(n-10);
+                total=total+ payoff[my][opp1][opp2] + payoff[opp1][my][opp2] + payoff[opp2][opp1][my];
                 mean = total/3;
                 if (mean<2) return 1; // when result is 0
                 else if (mean<3) return 1;// when result is 2
@@ -174,6 +289,10 @@ public class ThreePrisonersDilemma {
                 else return 1;// when 8 scenario
             }
         }
+
+        boolean reset() {
+            return true; // stateless
+        }
     }
     class PAVLOV1 extends Player {
         /*
@@ -184,10 +303,17 @@ public class ThreePrisonersDilemma {
         * */
         int sum=0;
         int H=0;
+
+        boolean reset() {
+            sum=0;
+            H=0;
+            return true;
+        }
+
         int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
             if(H==1){// sus T4T for tit for 2 tats
                 H=0;
-                if (Math.random() < 0.5)
+                if (random() < 0.5)
                     return oppHistory1[n-1];
                 else
                     return oppHistory2[n-1];
@@ -195,7 +321,7 @@ public class ThreePrisonersDilemma {
             if(n<6){
                 // by default first 6 is T4T
                 if (n==0) return 0; //cooperate by default
-                if (Math.random() < 0.5)
+                if (random() < 0.5)
                     return oppHistory1[n-1];
                 else
                     return oppHistory2[n-1];
@@ -209,7 +335,7 @@ public class ThreePrisonersDilemma {
                 if(sum ==0){
                     // T4T detected or always cooperate, the previous iteration is already all cooperate
                     // Hence u just need to carry on as T4T
-                    if (Math.random() < 0.5)
+                    if (random() < 0.5)
                         return oppHistory1[n-1];
                     else
                         return oppHistory2[n-1];
@@ -222,7 +348,7 @@ public class ThreePrisonersDilemma {
                 else if(sum == 3){//sus T4T
                     H=1;
                     //to adopt tit4 2 tats to recover mutual cooperattion
-                    if (Math.random() < 0.5)
+                    if (random() < 0.5)
                         return oppHistory1[n-1];
                     else
                         return oppHistory2[n-1];
@@ -248,6 +374,16 @@ public class ThreePrisonersDilemma {
         int count=0;
         int avg=0;
         int total=0;
+
+        boolean reset() {
+            sum=0;
+            H=0;
+            count=0;
+            avg=0;
+            total=0;
+            return true;
+        }
+
         int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
             if(count%6 ==0 && n !=0){
                 for(int P=1;P<7;P++){
@@ -262,7 +398,7 @@ public class ThreePrisonersDilemma {
             }
             if(H==1){// sus T4T for tit for 2 tats
                 H=0;
-                if (Math.random() < 0.5){
+                if (random() < 0.5){
                     sum=0;
                     count++;
                     return oppHistory1[n-1];}
@@ -276,7 +412,7 @@ public class ThreePrisonersDilemma {
                 if (count==0) {
                     count++;
                     return 0;} //cooperate by default
-                if (Math.random() < 0.5){
+                if (random() < 0.5){
                     count++;
                     return oppHistory1[n-1];}
                 else{
@@ -291,7 +427,7 @@ public class ThreePrisonersDilemma {
                 if(sum ==0){
                     // T4T detected or always cooperate, the previous iteration is already all cooperate
                     // Hence u just need to carry on as T4T
-                    if (Math.random() < 0.5) {
+                    if (random() < 0.5) {
                         count++;
                         sum=0;
                         return oppHistory1[n - 1];
@@ -312,7 +448,7 @@ public class ThreePrisonersDilemma {
                 else if(sum == 3){//sus T4T
                     H=1;
                     //to adopt tit4 2 tats to recover mutual cooperattion
-                    if (Math.random() < 0.5){
+                    if (random() < 0.5){
                         count++;
                         sum=0;
                         return oppHistory1[n-1];}
@@ -347,12 +483,24 @@ public class ThreePrisonersDilemma {
         //After this round, see opp actions to check if they decide to coop again
         int intGrudgeRound = 3;
 
-        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        boolean reset() {
+            intPlayer1Defects = 0;
+            intPlayer2Defects = 0;
+            intRoundRetailate = -1;
+            return true;
+        }
+
+        //Looks back over the grudge rounds at most
+        int lookback() {
+            return intGrudgeRound;
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
 
             //Record Defects count
             if (n > 0) {
-                intPlayer1Defects += oppHistory1[n - 1];
-                intPlayer2Defects += oppHistory2[n - 1];
+                intPlayer1Defects += oppHistory1.get(n - 1);
+                intPlayer2Defects += oppHistory2.get(n - 1);
             }
 
             //Start by cooperating
@@ -375,14 +523,14 @@ public class ThreePrisonersDilemma {
                 int intPlayer2Coop = 0;
 
                 for (int intCount = 0; intCount < intGrudgeRound; intCount++) {
-                    intPlayer1Coop += oppHistory1[n - 1 - intCount] == 0 ? 1 : 0;
-                    intPlayer2Coop += oppHistory2[n - 1 - intCount] == 0 ? 1 : 0;
-                    //intPlayer1Coop += oppHistory1[n - 1 - intCount] == 1 ? 1 : 0;
-                    //intPlayer2Coop += oppHistory2[n - 1 - intCount] == 1 ? 1 : 0;
+                    intPlayer1Coop += oppHistory1.get(n - 1 - intCount) == 0 ? 1 : 0;
+                    intPlayer2Coop += oppHistory2.get(n - 1 - intCount) == 0 ? 1 : 0;
+                    //intPlayer1Coop += oppHistory1.get(n - 1 - intCount) == 1 ? 1 : 0;
+                    //intPlayer2Coop += oppHistory2.get(n - 1 - intCount) == 1 ? 1 : 0;
                 }
 
                 //If both players wish to coop again, start to coop with them
-                if (intPlayer1Coop > 1 && intPlayer2Coop > 1 && (oppHistory1[n - 1] + oppHistory2[n - 1]) == 0) {
+                if (intPlayer1Coop > 1 && intPlayer2Coop > 1 && (oppHistory1.get(n - 1) + oppHistory2.get(n - 1)) == 0) {
                     //Hold round where agent coop to show intention to coop again
                     //Count backwards from -2
                     //-2 indicates 1 round where agent coop to reverse effect of retailation
@@ -412,6 +560,12 @@ public class ThreePrisonersDilemma {
         private int opp1Defects = 0;
         private int opp2Defects = 0;
 
+        boolean reset() {
+            opp1Defects = 0;
+            opp2Defects = 0;
+            return true;
+        }
+
         int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
             // cooperate if this is the first round
             if (n == 0)
@@ -542,13 +696,17 @@ public class ThreePrisonersDilemma {
     }
     // win stay lose shift
     class WinStayLoseShift extends Player {
-        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        int lookback() {
+            return 1;
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
             if (n==0) return 0;
 
             int r = n - 1;
-            int myLA = myHistory[r];
-            int oppLA1 = oppHistory1[r];
-            int oppLA2 = oppHistory2[r];
+            int myLA = myHistory.get(r);
+            int oppLA1 = oppHistory1.get(r);
+            int oppLA2 = oppHistory2.get(r);
 
             if (payoff[myLA][oppLA1][oppLA2]>=5) return myLA;
             return oppAction(myLA);
@@ -558,6 +716,10 @@ public class ThreePrisonersDilemma {
             if (action==1) return 0;
             return 1;
         }
+
+        boolean reset() {
+            return true; // stateless
+        }
     }
 
     class Mervyn extends Player {
@@ -576,6 +738,14 @@ public class ThreePrisonersDilemma {
         //aside from this, it is ideal to always keep track on what our opponents are playing and how they react at all times + yourself
         int mylastmove, opp1lastmove, opp2lastmove;
 
+        boolean reset() {
+            myscore = oppon1score = oppon2score = 0;
+            myhist = opp1hist = opp2hist = null; // don't keep the last match's histories alive
+            oppo1coop = oppo2coop = 0;
+            prevround = 0;
+            mylastmove = opp1lastmove = opp2lastmove = 0;
+            return true;
+        }
 
         int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
             //Always cooperate on the first round
@@ -647,7 +817,7 @@ public class ThreePrisonersDilemma {
         private int RandomnessR(int actions){
             // Be unpredictable, means that we need to add an element of randomness or something that seems weird so that people are thrown off
             int nums[] = new int[1000];
-            Random r = new Random();
+            Random r = randomGenerator();
             if (actions == 0) {
                 //more likely to cooperate
                 for (int x = 0; x < 999; x++) {
@@ -706,27 +876,250 @@ public class ThreePrisonersDilemma {
         }
     }
 
+    // Plays by a Q-table trained with QLearning. When alpha is 0 (as for a frozen table
+    // entered in a tournament) it only reads the table; the trainer sets alpha, gamma,
+    // epsilon and updates to learn from every round as it plays.
+    class QLearner extends Player {
+        final QLearning.Table table;
+        double alpha = 0, gamma = 0, epsilon = 0;
+        int[] updates = null; // per table entry, counted while learning
+
+        long myScore = 0, opp1Score = 0, opp2Score = 0;
+        int lastState = -1, lastAction = 0;
+
+        QLearner(QLearning.Table table) {
+            this.table = table;
+        }
+
+        int lookback() {
+            return table.memory;
+        }
+
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
+            int reward = 0;
+            if (n > 0) {
+                int my = myHistory.get(n-1), opp1 = oppHistory1.get(n-1), opp2 = oppHistory2.get(n-1);
+                reward = payoff[my][opp1][opp2];
+                myScore += reward;
+                opp1Score += payoff[opp1][my][opp2];
+                opp2Score += payoff[opp2][my][opp1];
+            }
+            int state = table.state(n, myHistory, oppHistory1, oppHistory2, myScore - Math.max(opp1Score, opp2Score));
+            if (alpha > 0 && lastState >= 0) {
+                int e = 2 * lastState + lastAction;
+                table.q[e] += alpha * (reward + gamma * table.max(state) - table.q[e]);
+                updates[e]++;
+            }
+            int action = epsilon > 0 && random() < epsilon ? (random() < 0.5 ? 0 : 1) : table.best(state);
+            lastState = state;
+            lastAction = action;
+            return action;
+        }
+
+        // The last round's reward ends the episode: no next state to bootstrap from.
+        void onMatchEnd(int myLast, int oppLast1, int oppLast2) {
+            if (alpha > 0 && lastState >= 0 && myLast >= 0) {
+                int e = 2 * lastState + lastAction;
+                table.q[e] += alpha * (payoff[myLast][oppLast1][oppLast2] - table.q[e]);
+                updates[e]++;
+            }
+        }
+
+        boolean reset() {
+            myScore = opp1Score = opp2Score = 0;
+            lastState = -1;
+            lastAction = 0;
+            return true;
+        }
+    }
+
     /* In our tournament, each pair of strategies will play one match against each other.
      This procedure simulates a single match and returns the scores. */
     float[] scoresOfMatch(Player A, Player B, Player C, int rounds) {
+        long[] payoffs = payoffsOfMatch(A, B, C, rounds);
+        float[] result = {(float) payoffs[0]/rounds, (float) payoffs[1]/rounds, (float) payoffs[2]/rounds};
+        return result;
+    }
+
+    // Simulates a single match and returns each seat's exact payoff total. The
+    // averaging in scoresOfMatch is left to whoever reports the result.
+    long[] payoffsOfMatch(Player A, Player B, Player C, int rounds) {
+        return payoffsOfMatch(A, B, C, rounds, noise > 0 ? new TremblingHand(noise, new Random(ThreadLocalRandom.current().nextLong())) : null);
+    }
+
+    // hand, if not null, flips the actions it picks before they are scored and recorded.
+    long[] payoffsOfMatch(Player A, Player B, Player C, int rounds, TremblingHand hand) {
         int[] HistoryA = new int[0], HistoryB = new int[0], HistoryC = new int[0];
-        float ScoreA = 0, ScoreB = 0, ScoreC = 0;
+        long ScoreA = 0, ScoreB = 0, ScoreC = 0;
+        if (profiler != null || TournamentEvents.decisionsEnabled()) return instrumentedPayoffsOfMatch(A, B, C, rounds, null, hand);
+        if (A.lookback() != UNBOUNDED && B.lookback() != UNBOUNDED && C.lookback() != UNBOUNDED)
+            return windowedPayoffsOfMatch(A, B, C, rounds, hand);
+        A.onMatchStart();
+        B.onMatchStart();
+        C.onMatchStart();
+        startModels(A, B, C);
 
         for (int i=0; i<rounds; i++) {
             int PlayA = A.selectAction(i, HistoryA, HistoryB, HistoryC);
             int PlayB = B.selectAction(i, HistoryB, HistoryC, HistoryA);
             int PlayC = C.selectAction(i, HistoryC, HistoryA, HistoryB);
+            if (hand != null && hand.next < 3L * (i + 1)) {
+                int flips = hand.flips(i);
+                PlayA ^= flips & 1;
+                PlayB ^= (flips >> 1) & 1;
+                PlayC ^= flips >> 2;
+            }
             ScoreA = ScoreA + payoff[PlayA][PlayB][PlayC];
             ScoreB = ScoreB + payoff[PlayB][PlayC][PlayA];
             ScoreC = ScoreC + payoff[PlayC][PlayA][PlayB];
+            observeRound(A, B, C, PlayA, PlayB, PlayC);
             HistoryA = extendIntArray(HistoryA, PlayA);
             HistoryB = extendIntArray(HistoryB, PlayB);
             HistoryC = extendIntArray(HistoryC, PlayC);
         }
-        float[] result = {ScoreA/rounds, ScoreB/rounds, ScoreC/rounds};
+        endMatch(A, B, C, rounds > 0 ? HistoryA[rounds-1] : -1, rounds > 0 ? HistoryB[rounds-1] : -1,
+                rounds > 0 ? HistoryC[rounds-1] : -1);
+        long[] result = {ScoreA, ScoreB, ScoreC};
         return result;
     }
 
+    // Same as payoffsOfMatch for three players with a bounded lookback: each seat's history
+    // is a ring buffer as long as the longest lookback, so memory doesn't grow with rounds.
+    long[] windowedPayoffsOfMatch(Player A, Player B, Player C, int rounds, TremblingHand hand) {
+        int window = Math.max(A.lookback(), Math.max(B.lookback(), C.lookback()));
+        History.Window HistoryA = new History.Window(window), HistoryB = new History.Window(window),
+                HistoryC = new History.Window(window);
+        long ScoreA = 0, ScoreB = 0, ScoreC = 0;
+        A.onMatchStart();
+        B.onMatchStart();
+        C.onMatchStart();
+        startModels(A, B, C);
+
+        for (int i=0; i<rounds; i++) {
+            int PlayA = A.selectAction(i, HistoryA, HistoryB, HistoryC);
+            int PlayB = B.selectAction(i, HistoryB, HistoryC, HistoryA);
+            int PlayC = C.selectAction(i, HistoryC, HistoryA, HistoryB);
+            if (hand != null && hand.next < 3L * (i + 1)) {
+                int flips = hand.flips(i);
+                PlayA ^= flips & 1;
+                PlayB ^= (flips >> 1) & 1;
+                PlayC ^= flips >> 2;
+            }
+            ScoreA = ScoreA + payoff[PlayA][PlayB][PlayC];
+            ScoreB = ScoreB + payoff[PlayB][PlayC][PlayA];
+            ScoreC = ScoreC + payoff[PlayC][PlayA][PlayB];
+            observeRound(A, B, C, PlayA, PlayB, PlayC);
+            HistoryA.add(PlayA);
+            HistoryB.add(PlayB);
+            HistoryC.add(PlayC);
+        }
+        endMatch(A, B, C, rounds > 0 ? HistoryA.get(rounds-1) : -1, rounds > 0 ? HistoryB.get(rounds-1) : -1,
+                rounds > 0 ? HistoryC.get(rounds-1) : -1);
+        long[] result = {ScoreA, ScoreB, ScoreC};
+        return result;
+    }
+
+    // Same as payoffsOfMatch, but every selectAction call is charged to the profiler
+    // (if any), sampled calls are recorded as JFR Decision events, and each call is
+    // timed against the watchdog's budget when a guard is given. Kept as a
+    // separate loop so the plain engine pays nothing when none of these is wanted.
+    long[] instrumentedPayoffsOfMatch(Player A, Player B, Player C, int rounds, MatchWatchdog.Guard guard, TremblingHand hand) {
+        int[] HistoryA = new int[0], HistoryB = new int[0], HistoryC = new int[0];
+        long ScoreA = 0, ScoreB = 0, ScoreC = 0;
+        StrategyProfiler.Stats StatsA = null, StatsB = null, StatsC = null;
+        if (profiler != null) {
+            StatsA = profiler.statsFor(A);
+            StatsB = profiler.statsFor(B);
+            StatsC = profiler.statsFor(C);
+        }
+        boolean sampleDecisions = TournamentEvents.decisionsEnabled();
+        instrumentedStart(A, guard, 0);
+        instrumentedStart(B, guard, 1);
+        instrumentedStart(C, guard, 2);
+        startModels(A, B, C);
+
+        for (int i=0; i<rounds; i++) {
+            boolean sampled = sampleDecisions && i % TournamentEvents.DECISION_SAMPLE_RATE == 0;
+            int PlayA = instrumentedSelect(A, StatsA, guard, 0, sampled, i, HistoryA, HistoryB, HistoryC);
+            int PlayB = instrumentedSelect(B, StatsB, guard, 1, sampled, i, HistoryB, HistoryC, HistoryA);
+            int PlayC = instrumentedSelect(C, StatsC, guard, 2, sampled, i, HistoryC, HistoryA, HistoryB);
+            if (hand != null && hand.next < 3L * (i + 1)) {
+                int flips = hand.flips(i);
+                PlayA ^= flips & 1;
+                PlayB ^= (flips >> 1) & 1;
+                PlayC ^= flips >> 2;
+            }
+            ScoreA = ScoreA + payoff[PlayA][PlayB][PlayC];
+            ScoreB = ScoreB + payoff[PlayB][PlayC][PlayA];
+            ScoreC = ScoreC + payoff[PlayC][PlayA][PlayB];
+            if (guard != null) guard.roundDone(i, ScoreA, ScoreB, ScoreC);
+            observeRound(A, B, C, PlayA, PlayB, PlayC);
+            HistoryA = extendIntArray(HistoryA, PlayA);
+            HistoryB = extendIntArray(HistoryB, PlayB);
+            HistoryC = extendIntArray(HistoryC, PlayC);
+        }
+        endMatch(A, B, C, rounds > 0 ? HistoryA[rounds-1] : -1, rounds > 0 ? HistoryB[rounds-1] : -1,
+                rounds > 0 ? HistoryC[rounds-1] : -1);
+        long[] result = {ScoreA, ScoreB, ScoreC};
+        return result;
+    }
+
+    // Tells each seat the match is over, with the last round's actions from its point of view.
+    void endMatch(Player A, Player B, Player C, int PlayA, int PlayB, int PlayC) {
+        A.onMatchEnd(PlayA, PlayB, PlayC);
+        B.onMatchEnd(PlayB, PlayC, PlayA);
+        C.onMatchEnd(PlayC, PlayA, PlayB);
+    }
+
+    void startModels(Player A, Player B, Player C) {
+        if (A.opponentModel != null) A.opponentModel.reset();
+        if (B.opponentModel != null) B.opponentModel.reset();
+        if (C.opponentModel != null) C.opponentModel.reset();
+        if (A.fingerprinter != null) A.fingerprinter.reset();
+        if (B.fingerprinter != null) B.fingerprinter.reset();
+        if (C.fingerprinter != null) C.fingerprinter.reset();
+    }
+
+    // Each seat's model and fingerprinter see the round the way its player's histories do.
+    void observeRound(Player A, Player B, Player C, int PlayA, int PlayB, int PlayC) {
+        if (A.opponentModel != null) A.opponentModel.observe(PlayA, PlayB, PlayC);
+        if (B.opponentModel != null) B.opponentModel.observe(PlayB, PlayC, PlayA);
+        if (C.opponentModel != null) C.opponentModel.observe(PlayC, PlayA, PlayB);
+        if (A.fingerprinter != null) A.fingerprinter.observe(PlayA, PlayB, PlayC);
+        if (B.fingerprinter != null) B.fingerprinter.observe(PlayB, PlayC, PlayA);
+        if (C.fingerprinter != null) C.fingerprinter.observe(PlayC, PlayA, PlayB);
+    }
+
+    // onMatchStart is given the same budget as a decision, charged to round 0.
+    void instrumentedStart(Player p, MatchWatchdog.Guard guard, int seat) {
+        if (guard != null) guard.begin(seat, 0);
+        p.onMatchStart();
+        if (guard != null) guard.end();
+    }
+
+    int instrumentedSelect(Player p, StrategyProfiler.Stats stats, MatchWatchdog.Guard guard, int seat, boolean sampled,
+                           int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+        if (guard != null) guard.begin(seat, n);
+        TournamentEvents.Decision event = null;
+        if (sampled) {
+            event = new TournamentEvents.Decision();
+            event.begin();
+        }
+        int action = stats != null ? profiler.selectAction(stats, p, n, myHistory, oppHistory1, oppHistory2)
+                : p.selectAction(n, myHistory, oppHistory1, oppHistory2);
+        if (guard != null) guard.end();
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.strategy = p.name();
+                event.round = n;
+                event.action = action;
+                event.commit();
+            }
+        }
+        return action;
+    }
+
     //	This is a helper function needed by scoresOfMatch.
     int[] extendIntArray(int[] arr, int next) {
         int[] result = new int[arr.length+1];
@@ -742,7 +1135,9 @@ public class ThreePrisonersDilemma {
 	 you will need to add a new entry to makePlayer, and change numPlayers.*/
 
     int numPlayers = 14;
+    static final int BUILT_IN_PLAYERS = 14;
     Player makePlayer(int which) {
+        if (standIns != null && which < standIns.length && standIns[which] != null) return new DistilledPlayer(standIns[which]);
         switch (which) {
             case 0: return new NicePlayer();
             case 1: return new NastyPlayer();
@@ -760,9 +1155,93 @@ public class ThreePrisonersDilemma {
             case 13: return new Mundhra_Shreyas_Sudhir_Player();
             //case 14: return new MERVYN_CHIONG_Player();
         }
+        if (which >= BUILT_IN_PLAYERS && which - BUILT_IN_PLAYERS < external.size())
+            return external.get(which - BUILT_IN_PLAYERS).newPlayer(this);
         throw new RuntimeException("Bad argument passed to makePlayer");
     }
 
+    // Strategies compiled from submission files by StrategyLoader, numbered from BUILT_IN_PLAYERS.
+    java.util.List<StrategyLoader.Strategy> external = new java.util.ArrayList<>();
+
+    // Adds a loaded strategy after the built-in ones and returns its index. A strategy of
+    // the same name that was already added is replaced at its index, e.g. after its file changed,
+    // and the pool drops the players of the old one on every thread.
+    int addStrategy(StrategyLoader.Strategy strategy) {
+        for (int e = 0; e < external.size(); e++)
+            if (external.get(e).name.equals(strategy.name)) {
+                external.set(e, strategy);
+                if (pool != null) pool.invalidate(BUILT_IN_PLAYERS + e);
+                return BUILT_IN_PLAYERS + e;
+            }
+        external.add(strategy);
+        numPlayers = BUILT_IN_PLAYERS + external.size();
+        return numPlayers - 1;
+    }
+
+    // Plays a loaded strategy. Submissions have no reset(), so each match gets a new one.
+    class ExternalPlayer extends Player {
+        final StrategyLoader.Strategy strategy;
+        final StrategyLoader.Decider decider;
+
+        ExternalPlayer(StrategyLoader.Strategy strategy) {
+            this.strategy = strategy;
+            this.decider = strategy.create();
+        }
+
+        int selectAction(int n, int[] myHistory, int[] oppHistory1, int[] oppHistory2) {
+            return decider.decide(n, myHistory, oppHistory1, oppHistory2);
+        }
+
+        void onMatchEnd() {
+            decider.matchEnded();
+        }
+
+        String name() {
+            return strategy.name;
+        }
+    }
+
+    // Plays a table fitted by Distiller in place of the strategy it was fitted to, under its name.
+    class DistilledPlayer extends Player {
+        final Distiller.Table table;
+        int counted = 0, defections1 = 0, defections2 = 0; // opponents' defections in the first `counted` rounds
+
+        DistilledPlayer(Distiller.Table table) {
+            this.table = table;
+        }
+
+        int lookback() {
+            return Math.max(1, table.memory);
+        }
+
+        // Where the strategy varied, draw with the frequency it did.
+        int selectAction(int n, History myHistory, History oppHistory1, History oppHistory2) {
+            if (n == counted + 1) {
+                defections1 += oppHistory1.get(n - 1);
+                defections2 += oppHistory2.get(n - 1);
+            } else if (n != counted) {
+                defections1 = oppHistory1.defections();
+                defections2 = oppHistory2.defections();
+            }
+            counted = n;
+            double p = table.defect(n, myHistory, oppHistory1, oppHistory2, defections1, defections2);
+            return p <= 0 ? 0 : p >= 1 ? 1 : random() < p ? 1 : 0;
+        }
+
+        void onMatchStart() {
+            counted = defections1 = defections2 = 0;
+        }
+
+        boolean reset() {
+            onMatchStart();
+            return true;
+        }
+
+        String name() {
+            return table.name;
+        }
+    }
+
     /* Finally, the remaining code actually runs the tournament. */
 
     public static void main (String[] args) {
@@ -775,51 +1254,254 @@ public class ThreePrisonersDilemma {
 
     boolean verbose = true; // set verbose = false if you get too much text output
 
+    // set profiler = new StrategyProfiler(true, true) to report CPU time and
+    // allocated bytes per selectAction call for each strategy
+    StrategyProfiler profiler = null;
+
+    // set metrics = TournamentMetrics.register() to watch a long batch live over JMX
+    TournamentMetrics metrics = null;
+
+    // set watchdog = new MatchWatchdog(millis) to play each match on a worker thread, forfeiting
+    // any strategy whose selectAction takes longer than millis instead of hanging the tournament
+    MatchWatchdog watchdog = null;
+
+    // set noise = e (0 < e <= 1) for a trembling hand: each intended action is flipped with
+    // probability e, and everyone, the player included, sees the flipped action (see TremblingHand)
+    double noise = 0;
+
+    // Match lengths are drawn uniformly from this range.
+    static final int MIN_ROUNDS = 90, MAX_ROUNDS = 110;
+
+    // set crn = new CommonRandomNumbers(seed, antithetic) to draw match lengths and the
+    // players' randomness from streams keyed on (repetition, triple, seat), so that
+    // runs compared against each other share their random numbers
+    CommonRandomNumbers crn = null;
+    long repetition = 0;
+
+    // set matchLog = new MatchLog(playerNames()) to keep every match's result, e.g. for Bootstrap
+    MatchLog matchLog = null;
+
+    // set scoreTensor = new ScoreTensor(playerNames()) to keep every triple's payoffs and have
+    // runTournament report which strategies are evolutionarily stable (see EvolutionaryStability)
+    ScoreTensor scoreTensor = null;
+
+    // set standIns[which] to a table from Distiller to play it instead of strategy `which`, e.g. to
+    // speed up large sweeps; leave null for exact runs. Call pool.clear() after changing it.
+    Distiller.Table[] standIns = null;
+
+    // Players that implement reset() are reused between matches; set pool = null to build
+    // a fresh copy of every player for every match. Call pool.clear() after changing makePlayer.
+    PlayerPool pool = new PlayerPool();
+
     int[] runTournament() {
-        float[] totalScore = new float[numPlayers];
+        TournamentEvents.Tournament tournamentEvent = new TournamentEvents.Tournament();
+        tournamentEvent.begin();
+        ScoreTally tally = playTournament();
+
+        // Sort the players by their score.
+        TournamentEvents.Phase phase = TournamentEvents.beginPhase("ranking");
+        int[] sortedOrder = tally.sortedOrder();
+        TournamentEvents.endPhase(phase);
+
+        // Finally, print out the sorted results.
+        phase = TournamentEvents.beginPhase("report");
+        printResults(tally, sortedOrder);
+        if (profiler != null) profiler.printReport(System.out);
+        if (watchdog != null) watchdog.printForfeits(System.out);
+        TournamentEvents.endPhase(phase);
+        if (scoreTensor != null) {
+            phase = TournamentEvents.beginPhase("stability");
+            EvolutionaryStability.print(EvolutionaryStability.analyse(scoreTensor), System.out);
+            TournamentEvents.endPhase(phase);
+        }
+
+        tournamentEvent.end();
+        if (tournamentEvent.shouldCommit()) {
+            tournamentEvent.numPlayers = numPlayers;
+            tournamentEvent.matches = numTriples(numPlayers);
+            tournamentEvent.commit();
+        }
+        //int[] outcome = [sortedOrder,totalScore];
+        return sortedOrder;
+
+    } // end of runTournament()
+
+    // set workers > 1 to play the round robin on that many threads, longest matches first
+    // (see ParallelTournament); costModel is probed on first use and refined by each run
+    int workers = 1;
+    MatchCostModel costModel = null;
+
+    // set checkpoint = new TournamentCheckpoint(path, millis) (with crn set) to save progress
+    // every so often and resume from the file after a crash
+    TournamentCheckpoint checkpoint = null;
+
+    // Plays every match of the round robin and returns the tally, without printing results.
+    ScoreTally playTournament() {
+        if (checkpoint != null) return checkpoint.play(this);
+        if (workers > 1) return playParallelTournament();
+        TournamentEvents.Phase phase = TournamentEvents.beginPhase("matches");
+        ScoreTally tally = new ScoreTally(numPlayers, MIN_ROUNDS, MAX_ROUNDS);
+        if (metrics != null) metrics.startTournament(playerNames(), numTriples(numPlayers), 1);
 
         // This loop plays each triple of players against each other.
         // Note that we include duplicates: two copies of your strategy will play once
         // against each other strategy, and three copies of your strategy will play once.
 
-        for (int i=0; i<numPlayers; i++) for (int j=i; j<numPlayers; j++) for (int k=j; k<numPlayers; k++) {
-
-            Player A = makePlayer(i); // Create a fresh copy of each player
-            Player B = makePlayer(j);
-            Player C = makePlayer(k);
-            int rounds = 90 + (int)Math.rint(20 * Math.random()); // Between 90 and 110 rounds
-            float[] matchResults = scoresOfMatch(A, B, C, rounds); // Run match
-            totalScore[i] = totalScore[i] + matchResults[0];
-            totalScore[j] = totalScore[j] + matchResults[1];
-            totalScore[k] = totalScore[k] + matchResults[2];
-            if (verbose)
-                System.out.println(A.name() + " scored " + matchResults[0] +
-                        " points, " + B.name() + " scored " + matchResults[1] +
-                        " points, and " + C.name() + " scored " + matchResults[2] + " points.");
-        }
-        int[] sortedOrder = new int[numPlayers];
-        // This loop sorts the players by their score.
-        for (int i=0; i<numPlayers; i++) {
-            int j=i-1;
-            for (; j>=0; j--) {
-                if (totalScore[i] > totalScore[sortedOrder[j]])
-                    sortedOrder[j+1] = sortedOrder[j];
-                else break;
-            }
-            sortedOrder[j+1] = i;
+        for (int i=0; i<numPlayers; i++) for (int j=i; j<numPlayers; j++) for (int k=j; k<numPlayers; k++)
+            playTriple(i, j, k, tally);
+
+        if (metrics != null) metrics.finishTournament();
+        TournamentEvents.endPhase(phase);
+        return tally;
+    }
+
+    ScoreTally playParallelTournament() {
+        TournamentEvents.Phase phase = TournamentEvents.beginPhase("matches");
+        if (costModel == null) costModel = MatchCostModel.probe(this, 3);
+        ParallelTournament parallel = new ParallelTournament(this, workers, costModel);
+        ScoreTally tally = parallel.run();
+        costModel = parallel.costs;
+        TournamentEvents.endPhase(phase);
+        return tally;
+    }
+
+    // Plays the match between strategies i, j and k, adds it to the tally (if any)
+    // and returns the three seats' scores, i.e. their average payoff per round.
+    double[] playTriple(int i, int j, int k, ScoreTally tally) {
+        return playTriple(i, j, k, tally, matchLog);
+    }
+
+    double[] playTriple(int i, int j, int k, ScoreTally tally, MatchLog log) {
+        Player A = acquirePlayer(i); // A fresh (or reset) copy of each player
+        Player B = acquirePlayer(j);
+        Player C = acquirePlayer(k);
+        int rounds = matchRounds(i, j, k);
+        TournamentEvents.Match matchEvent = new TournamentEvents.Match();
+        matchEvent.begin();
+        long matchStart = metrics != null ? System.nanoTime() : 0;
+        long[] matchResults = playMatch(A, B, C, i, j, k, rounds); // Run match
+        if (metrics != null) metrics.matchCompleted(i, j, k, matchResults, rounds, System.nanoTime() - matchStart);
+        matchEvent.end();
+        if (matchEvent.shouldCommit()) {
+            matchEvent.strategyA = A.name();
+            matchEvent.strategyB = B.name();
+            matchEvent.strategyC = C.name();
+            matchEvent.indexA = i;
+            matchEvent.indexB = j;
+            matchEvent.indexC = k;
+            matchEvent.rounds = rounds;
+            matchEvent.payoffA = matchResults[0];
+            matchEvent.payoffB = matchResults[1];
+            matchEvent.payoffC = matchResults[2];
+            matchEvent.commit();
         }
+        if (tally != null) {
+            tally.add(i, matchResults[0], rounds);
+            tally.add(j, matchResults[1], rounds);
+            tally.add(k, matchResults[2], rounds);
+        }
+        if (log != null) log.add(i, j, k, rounds, matchResults);
+        if (scoreTensor != null) scoreTensor.add(i, j, k, rounds, matchResults);
+        if (verbose)
+            System.out.println(A.name() + " scored " + (float) matchResults[0]/rounds +
+                    " points, " + B.name() + " scored " + (float) matchResults[1]/rounds +
+                    " points, and " + C.name() + " scored " + (float) matchResults[2]/rounds + " points.");
+        // A player forfeited by the watchdog may still be running on its worker, so
+        // players are only recycled when matches run on the calling thread.
+        if (pool != null && watchdog == null) {
+            pool.release(this, i, A);
+            pool.release(this, j, B);
+            pool.release(this, k, C);
+        }
+        double[] scores = {(double) matchResults[0]/rounds, (double) matchResults[1]/rounds, (double) matchResults[2]/rounds};
+        return scores;
+    }
 
-        // Finally, print out the sorted results.
+    // Length of match (i, j, k): from its common random stream if crn is set.
+    int matchRounds(int i, int j, int k) {
+        if (crn != null) return crn.rounds(repetition, i, j, k, MIN_ROUNDS, MAX_ROUNDS);
+        return MIN_ROUNDS + (int)Math.rint((MAX_ROUNDS - MIN_ROUNDS) * Math.random()); // Between 90 and 110 rounds
+    }
+
+    // Plays match (i, j, k) for an estimate rather than a round robin (see SampledTournament):
+    // nothing goes to a tally, matchLog, scoreTensor or metrics, and nothing is printed.
+    // Returns the three seats' scores.
+    double[] sampleTriple(int i, int j, int k) {
+        Player A = acquirePlayer(i), B = acquirePlayer(j), C = acquirePlayer(k);
+        int rounds = matchRounds(i, j, k);
+        long[] result = playMatch(A, B, C, i, j, k, rounds);
+        if (pool != null && watchdog == null) {
+            pool.release(this, i, A);
+            pool.release(this, j, B);
+            pool.release(this, k, C);
+        }
+        return new double[]{(double) result[0] / rounds, (double) result[1] / rounds, (double) result[2] / rounds};
+    }
+
+    // Gives the players their random streams (if crn is set) and plays them, under the watchdog if any.
+    long[] playMatch(Player A, Player B, Player C, int i, int j, int k, int rounds) {
+        if (crn != null) {
+            A.rng = crn.stream(repetition, i, j, k, 0);
+            B.rng = crn.stream(repetition, i, j, k, 1);
+            C.rng = crn.stream(repetition, i, j, k, 2);
+        }
+        TremblingHand hand = trembles(i, j, k);
+        return watchdog != null ? watchdog.play(this, A, B, C, rounds, i, j, k, hand) : payoffsOfMatch(A, B, C, rounds, hand);
+    }
+
+    // The execution noise for match (i, j, k), if noise is on: from its own common random
+    // stream when crn is set, so that noisy runs stay reproducible and paired.
+    TremblingHand trembles(int i, int j, int k) {
+        if (noise <= 0) return null;
+        return new TremblingHand(noise, crn != null ? crn.stream(repetition, i, j, k, CommonRandomNumbers.NOISE_SEAT)
+                : new Random(ThreadLocalRandom.current().nextLong()));
+    }
+
+    // Plays the first `rounds` rounds of match (i, j, k) the way playTriple would, without
+    // recording anything. Used by DifferentialValidator to locate a divergence.
+    long[] replayTriple(int i, int j, int k, int rounds) {
+        Player A = acquirePlayer(i), B = acquirePlayer(j), C = acquirePlayer(k);
+        long[] result = playMatch(A, B, C, i, j, k, rounds);
+        if (pool != null && watchdog == null) {
+            pool.release(this, i, A);
+            pool.release(this, j, B);
+            pool.release(this, k, C);
+        }
+        return result;
+    }
+
+    // Number of matches in a round robin over n strategies with repeats, C(n+2,3).
+    static long numTriples(int n) {
+        return TripleIndex.triples(n);
+    }
+
+    Player acquirePlayer(int which) {
+        return pool != null ? pool.acquire(this, which) : makePlayer(which);
+    }
+
+    String[] names = null;
+
+    // Strategy names by index, built once per roster size rather than per lookup.
+    String[] playerNames() {
+        String[] cached = names;
+        if (cached == null || cached.length != numPlayers) {
+            cached = new String[numPlayers];
+            for (int p=0; p<numPlayers; p++) cached[p] = makePlayer(p).name();
+            names = cached;
+        }
+        return cached.clone();
+    }
+
+    // Averages are only formed here, from the exact totals held in the tally.
+    void printResults(ScoreTally tally, int[] sortedOrder) {
         if (verbose) System.out.println();
         System.out.println("Tournament Results");
-        for (int i=0; i<numPlayers; i++)
-            System.out.println(makePlayer(sortedOrder[i]).name() + ": "
-                    + totalScore[sortedOrder[i]] + " points.");
+        String[] names = playerNames();
+        for (int i=0; i<sortedOrder.length; i++)
+            System.out.println(names[sortedOrder[i]] + ": "
+                    + (float) tally.score(sortedOrder[i]) + " points.");
         System.out.println();
-        //int[] outcome = [sortedOrder,totalScore];
-        return sortedOrder;
-
-    } // end of runTournament()
+    }
 
 }// end of class PrisonersDilemma
 /*
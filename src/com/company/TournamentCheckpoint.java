@@ -0,0 +1,203 @@
+package com.company;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/* Periodic checkpoints of a round robin, so a batch that dies can pick up where it stopped.
+
+ The round robin is played by TripleIndex rank in segments of contiguous
+ ranks (each played in parallel when engine.workers > 1). After a segment,
+ if `intervalMillis` have passed since the last save, the file is rewritten
+ with:
+
+   - the roster names, the common random numbers' seed and mode and the
+     repetition, which identify the run;
+   - the completed rank ranges;
+   - the ScoreTally, and the ScoreTensor if the engine keeps one.
+
+ Every random draw comes from common random numbers keyed on the triple, so
+ there is no generator state to save: a match plays the same whenever it is
+ played, and the tally is integer sums, so a resumed run gives bit-identical
+ totals. Checkpointing therefore requires engine.crn. The file is written to
+ a temporary file and moved into place, so a kill mid-save leaves the last
+ checkpoint intact.
+
+ On start, an existing checkpoint for the same run is resumed (one that is
+ complete just gives back its tally); one for a different run is an error,
+ so delete it to start over. A MatchLog only sees the matches played since
+ the last resume. */
+public class TournamentCheckpoint {
+
+    static final int FILE_MAGIC = 0x54434B31; // "TCK1"
+
+    final Path file;
+    final long intervalMillis;
+    long segment = 0;  // ranks per segment; 0 picks about 1% of the round robin
+
+    // Loaded or accumulated state.
+    long[] done = new long[0];  // completed rank ranges as from0, to0, from1, to1, ... sorted and disjoint
+    ScoreTally tally;
+    boolean resumed;
+
+    public TournamentCheckpoint(Path file, long intervalMillis) {
+        this.file = file;
+        this.intervalMillis = intervalMillis;
+    }
+
+    ScoreTally play(ThreePrisonersDilemma engine) {
+        if (engine.crn == null)
+            throw new IllegalStateException("Checkpointed runs need common random numbers (engine.crn) to resume bit-identically");
+        TripleIndex index = new TripleIndex(engine.numPlayers);
+        long size = index.size();
+        String[] names = engine.playerNames();
+        tally = new ScoreTally(engine.numPlayers, ThreePrisonersDilemma.MIN_ROUNDS, ThreePrisonersDilemma.MAX_ROUNDS);
+        done = new long[0];
+        resumed = Files.exists(file);
+        if (resumed) {
+            try {
+                load(engine, names);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't resume from " + file, e);
+            }
+        }
+        long step = segment > 0 ? segment : Math.max(1000, size / 100);
+
+        TournamentEvents.Phase phase = TournamentEvents.beginPhase("matches");
+        if (engine.metrics != null) engine.metrics.startTournament(names, size - completed(), Math.max(1, engine.workers));
+        if (engine.workers > 1 && engine.costModel == null) engine.costModel = MatchCostModel.probe(engine, 3);
+        long lastSave = System.nanoTime();
+        int[] ijk = new int[3];
+        long from;
+        while ((from = firstGap()) < size) {
+            long to = Math.min(gapEnd(from, size), from + step);
+            if (engine.workers > 1) {
+                ParallelTournament parallel = new ParallelTournament(engine, engine.workers, engine.costModel);
+                tally.merge(parallel.run(from, to));
+                engine.costModel = parallel.costs;
+            } else {
+                for (long r = from; r < to; r++) {
+                    index.unrank(r, ijk);
+                    engine.playTriple(ijk[0], ijk[1], ijk[2], tally);
+                }
+            }
+            markDone(from, to);
+            if (System.nanoTime() - lastSave >= intervalMillis * 1_000_000 || firstGap() >= size) {
+                save(engine, names);
+                lastSave = System.nanoTime();
+            }
+        }
+        if (engine.metrics != null) engine.metrics.finishTournament();
+        TournamentEvents.endPhase(phase);
+        return tally;
+    }
+
+    long completed() {
+        long sum = 0;
+        for (int r = 0; r < done.length; r += 2) sum += done[r + 1] - done[r];
+        return sum;
+    }
+
+    // The lowest rank not yet played.
+    long firstGap() {
+        return done.length > 0 && done[0] == 0 ? done[1] : 0;
+    }
+
+    // The end of the unplayed range starting at `from`.
+    long gapEnd(long from, long size) {
+        for (int r = 0; r < done.length; r += 2) if (done[r] > from) return done[r];
+        return size;
+    }
+
+    // Adds from..to-1 to the completed ranges, merging neighbours.
+    void markDone(long from, long to) {
+        long[] all = Arrays.copyOf(done, done.length + 2);
+        all[done.length] = from;
+        all[done.length + 1] = to;
+        for (int r = done.length; r > 0 && all[r - 2] > all[r]; r -= 2) {
+            long a = all[r], b = all[r + 1];
+            all[r] = all[r - 2];
+            all[r + 1] = all[r - 1];
+            all[r - 2] = a;
+            all[r - 1] = b;
+        }
+        int m = 0;
+        for (int r = 0; r < all.length; r += 2) {
+            if (m > 0 && all[r] <= all[m - 1]) {
+                all[m - 1] = Math.max(all[m - 1], all[r + 1]);
+            } else {
+                all[m++] = all[r];
+                all[m++] = all[r + 1];
+            }
+        }
+        done = Arrays.copyOf(all, m);
+    }
+
+    void save(ThreePrisonersDilemma engine, String[] names) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(names.length);
+                for (String name : names) out.writeUTF(name);
+                out.writeLong(engine.crn.seed);
+                out.writeBoolean(engine.crn.antithetic);
+                out.writeLong(engine.repetition);
+                out.writeInt(tally.minRounds);
+                out.writeInt(tally.maxRounds);
+                out.writeInt(done.length);
+                for (long d : done) out.writeLong(d);
+                for (int p = 0; p < tally.numPlayers; p++) {
+                    for (long t : tally.payoffTotals[p]) out.writeLong(t);
+                    out.writeLong(tally.matchCounts[p]);
+                    out.writeLong(tally.roundCounts[p]);
+                }
+                ScoreTensor tensor = engine.scoreTensor;
+                out.writeBoolean(tensor != null);
+                if (tensor != null) {
+                    for (long c = 0; c < tensor.cells(); c++) out.writeInt(tensor.get(c));
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write checkpoint " + file, e);
+        }
+    }
+
+    void load(ThreePrisonersDilemma engine, String[] names) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) throw new IOException(file + " is not a tournament checkpoint");
+            String[] saved = new String[in.readInt()];
+            for (int p = 0; p < saved.length; p++) saved[p] = in.readUTF();
+            long seed = in.readLong();
+            boolean antithetic = in.readBoolean();
+            long repetition = in.readLong();
+            int minRounds = in.readInt(), maxRounds = in.readInt();
+            if (!Arrays.equals(saved, names) || seed != engine.crn.seed || antithetic != engine.crn.antithetic
+                    || repetition != engine.repetition || minRounds != tally.minRounds || maxRounds != tally.maxRounds)
+                throw new IllegalStateException("Checkpoint " + file + " is for a different run; delete it to start over");
+            done = new long[in.readInt()];
+            for (int r = 0; r < done.length; r++) done[r] = in.readLong();
+            for (int p = 0; p < tally.numPlayers; p++) {
+                for (int r = 0; r < tally.payoffTotals[p].length; r++) tally.payoffTotals[p][r] = in.readLong();
+                tally.matchCounts[p] = in.readLong();
+                tally.roundCounts[p] = in.readLong();
+            }
+            boolean hasTensor = in.readBoolean();
+            ScoreTensor tensor = engine.scoreTensor;
+            if (hasTensor != (tensor != null))
+                throw new IllegalStateException("Checkpoint " + file + (hasTensor ? " has" : " has no") + " score tensor, unlike the engine");
+            if (tensor != null) {
+                for (long c = 0; c < tensor.cells(); c++) tensor.set(c, in.readInt());
+                tensor.version.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.company;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/* Java Flight Recorder events for the tournament engine.
+
+ These let a recording tie CPU samples and GC pauses to the tournament, phase,
+ match or strategy decision that was running at the time. When no recording
+ is active, begin/commit do nothing and the event objects are scalar replaced,
+ so the engine pays nothing. Fields are only filled in after shouldCommit()
+ says the event will be kept.
+
+ Decision events are off by default, even in a recording, as there is one per
+ player per round. Turn them on in a custom .jfc settings file, e.g.
+     <event name="com.company.Decision"><setting name="enabled">true</setting></event>
+ passed as -XX:StartFlightRecording:settings=decisions.jfc,filename=run.jfr.
+ Only every DECISION_SAMPLE_RATE-th round of a match is recorded. */
+public class TournamentEvents {
+
+    static final int DECISION_SAMPLE_RATE = 16;
+
+    @Name("com.company.Tournament")
+    @Label("Tournament")
+    @Category("Prisoners Dilemma")
+    @Description("One runTournament call, from first match to printed results")
+    @StackTrace(false)
+    static class Tournament extends Event {
+        @Label("Players")
+        int numPlayers;
+
+        @Label("Matches")
+        long matches;
+    }
+
+    @Name("com.company.TournamentPhase")
+    @Label("Tournament Phase")
+    @Category("Prisoners Dilemma")
+    @Description("A phase of runTournament: playing matches, ranking or reporting")
+    @StackTrace(false)
+    static class Phase extends Event {
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("com.company.Match")
+    @Label("Match")
+    @Category("Prisoners Dilemma")
+    @Description("One match between a triple of strategies")
+    @StackTrace(false)
+    static class Match extends Event {
+        @Label("Strategy A")
+        String strategyA;
+        @Label("Strategy B")
+        String strategyB;
+        @Label("Strategy C")
+        String strategyC;
+
+        @Label("Index A")
+        int indexA;
+        @Label("Index B")
+        int indexB;
+        @Label("Index C")
+        int indexC;
+
+        @Label("Rounds")
+        int rounds;
+
+        @Label("Payoff A")
+        @Description("Total payoff to seat A over the match")
+        long payoffA;
+        @Label("Payoff B")
+        long payoffB;
+        @Label("Payoff C")
+        long payoffC;
+    }
+
+    @Name("com.company.Decision")
+    @Label("Strategy Decision")
+    @Category("Prisoners Dilemma")
+    @Description("A sampled selectAction call")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Decision extends Event {
+        @Label("Strategy")
+        String strategy;
+
+        @Label("Round")
+        int round;
+
+        @Label("Action")
+        @Description("0 to cooperate, 1 to defect")
+        int action;
+    }
+
+    // Starts a phase event; returns it so the caller can end it with endPhase.
+    static Phase beginPhase(String phase) {
+        Phase event = new Phase();
+        event.begin();
+        event.phase = phase;
+        return event;
+    }
+
+    static void endPhase(Phase event) {
+        event.commit();
+    }
+
+    // True while a recording wants Decision events. Checked once per match.
+    static boolean decisionsEnabled() {
+        return new Decision().isEnabled();
+    }
+}
@@ -0,0 +1,146 @@
+package com.company;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/* Live progress of a running tournament, published over JMX.
+
+ The match loop only ever adds to LongAdders, which stripe their cells across
+ threads, so workers never contend with each other or with a JMX client
+ reading the totals. Everything the MBean reports is derived from those sums
+ at read time. */
+public class TournamentMetrics implements TournamentMetricsMBean {
+
+    static final String OBJECT_NAME = "com.company:type=TournamentMetrics";
+
+    // Per-tournament state, swapped in whole by startTournament so readers see a consistent roster.
+    static class Run {
+        final String[] names;
+        final long triples;
+        final int workers;
+        final long startNanos = System.nanoTime();
+        volatile long endNanos; // 0 while running; stops the clock once the tournament finishes
+        final LongAdder matches = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+        final LongAdder[] payoffs;
+        final LongAdder[] rounds;
+
+        Run(String[] names, long triples, int workers) {
+            this.names = names;
+            this.triples = triples;
+            this.workers = workers;
+            payoffs = new LongAdder[names.length];
+            rounds = new LongAdder[names.length];
+            for (int p = 0; p < names.length; p++) {
+                payoffs[p] = new LongAdder();
+                rounds[p] = new LongAdder();
+            }
+        }
+    }
+
+    volatile Run run = new Run(new String[0], 0, 1);
+
+    // Creates the metrics and registers them with the platform MBean server.
+    public static TournamentMetrics register() {
+        TournamentMetrics metrics = new TournamentMetrics();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(metrics, name);
+        } catch (JMException e) {
+            throw new RuntimeException("Could not register " + OBJECT_NAME, e);
+        }
+        return metrics;
+    }
+
+    void startTournament(String[] names, long triples, int workers) {
+        run = new Run(names, triples, workers);
+    }
+
+    void finishTournament() {
+        run.endNanos = System.nanoTime();
+    }
+
+    // Called by a worker after each match with the time it spent playing it.
+    void matchCompleted(int i, int j, int k, long[] payoffs, int rounds, long busyNanos) {
+        Run r = run;
+        r.payoffs[i].add(payoffs[0]);
+        r.payoffs[j].add(payoffs[1]);
+        r.payoffs[k].add(payoffs[2]);
+        r.rounds[i].add(rounds);
+        r.rounds[j].add(rounds);
+        r.rounds[k].add(rounds);
+        r.busyNanos.add(busyNanos);
+        r.matches.increment();
+    }
+
+    double elapsedSeconds(Run r) {
+        long end = r.endNanos;
+        return ((end != 0 ? end : System.nanoTime()) - r.startNanos) / 1e9;
+    }
+
+    public long getMatchesCompleted() {
+        return run.matches.sum();
+    }
+
+    public double getMatchesPerSecond() {
+        Run r = run;
+        double elapsed = elapsedSeconds(r);
+        return elapsed > 0 ? r.matches.sum() / elapsed : 0;
+    }
+
+    public long getTriplesTotal() {
+        return run.triples;
+    }
+
+    public long getTriplesRemaining() {
+        Run r = run;
+        return Math.max(0, r.triples - r.matches.sum());
+    }
+
+    public double getEtaSeconds() {
+        Run r = run;
+        long done = r.matches.sum();
+        if (done == 0) return -1;
+        return (r.triples - done) * elapsedSeconds(r) / done;
+    }
+
+    public int getWorkers() {
+        return run.workers;
+    }
+
+    public double getWorkerUtilisation() {
+        Run r = run;
+        double elapsed = elapsedSeconds(r);
+        return elapsed > 0 ? r.busyNanos.sum() / 1e9 / (elapsed * r.workers) : 0;
+    }
+
+    public String[] getRunningMeanScores() {
+        Run r = run;
+        String[] result = new String[r.names.length];
+        for (int p = 0; p < r.names.length; p++)
+            result[p] = r.names[p] + "=" + mean(r, p);
+        return result;
+    }
+
+    public double runningMeanScore(String strategy) {
+        Run r = run;
+        for (int p = 0; p < r.names.length; p++)
+            if (r.names[p].equals(strategy)) return mean(r, p);
+        throw new IllegalArgumentException("Unknown strategy " + strategy);
+    }
+
+    double mean(Run r, int p) {
+        long rounds = r.rounds[p].sum();
+        return rounds == 0 ? 0 : (double) r.payoffs[p].sum() / rounds;
+    }
+
+    public void reset() {
+        Run r = run;
+        startTournament(r.names, r.triples, r.workers);
+    }
+}
@@ -0,0 +1,28 @@
+package com.company;
+
+/* Management interface for TournamentMetrics, as seen from jconsole or any JMX client. */
+public interface TournamentMetricsMBean {
+
+    long getMatchesCompleted();
+
+    double getMatchesPerSecond();
+
+    long getTriplesTotal();
+
+    long getTriplesRemaining();
+
+    // Estimated seconds until the current tournament finishes, or -1 before any match completes.
+    double getEtaSeconds();
+
+    int getWorkers();
+
+    // Fraction of worker time spent inside matches since the tournament started.
+    double getWorkerUtilisation();
+
+    // "Strategy=mean" entries, mean payoff per round over the matches played so far.
+    String[] getRunningMeanScores();
+
+    double runningMeanScore(String strategy);
+
+    void reset();
+}
@@ -0,0 +1,360 @@
+package com.company;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* A resident tournament process, so that scripts firing many short tournaments
+ pay JVM startup, class loading, submission compiling and JIT warm-up once.
+
+   java -cp <classes> com.company.TournamentServer [port] [submissions dir]
+
+ The server loads the roster (the built-in strategies plus any submissions),
+ plays a few warm-up tournaments so the match loops are compiled, and then
+ listens on the loopback interface only. A client sends one job per line as
+ key=value pairs, all optional:
+
+   id=<tag>          echoed on every reply line (default: a counter)
+   roster=<list>     comma-separated names or indices from the loaded roster,
+                     repeats allowed (default: all)
+   mode=<mode>       full (default), uniform, stratified, swiss or ess
+   seed=<n>          common random numbers seed (default 1)
+   reps=<n>          repetitions for full and ess (default 1)
+   samples=<n>       matches for uniform and stratified
+   rounds=<n>        rounds for swiss
+   noise=<e>         trembling-hand noise (default 0)
+   workers=<n>       threads for full and ess (default 1)
+
+ Match lengths are the engine's fixed MIN_ROUNDS..MAX_ROUNDS. Replies stream
+ back as each part is ready:
+
+   ACCEPTED <id>
+   SCORE <id> <rep> <name> <score>           full, per repetition
+   RANK <id> <place> <name> <mean score>     full, after the last repetition
+   ESTIMATE <id> <name> <total> <std error>  uniform, stratified, swiss
+   ESS <id> <name> <status> <best invader> <invasion fitness>
+   DONE <id> <millis>
+   ERROR <id> <message>
+
+ The line RELOAD recompiles the submissions directory, QUIT closes the
+ connection and SHUTDOWN stops the server. Jobs from every connection share
+ a pool of `slots` threads, and a connection's replies can interleave if it
+ sends several jobs at once, hence the ids. From a shell:
+
+   exec 3<>/dev/tcp/127.0.0.1/7474; echo "id=a mode=full reps=3" >&3; cat <&3 */
+public class TournamentServer implements AutoCloseable {
+
+    static final int DEFAULT_PORT = 7474;
+
+    final ThreePrisonersDilemma roster = new ThreePrisonersDilemma();
+    final StrategyLoader loader;
+    final Path submissions;
+    final ReadWriteLock rosterLock = new ReentrantReadWriteLock(); // RELOAD writes, jobs read
+    final ServerSocket socket;
+    final ExecutorService jobs;
+    volatile boolean running = true;
+    int nextJob = 0;
+
+    public TournamentServer(int port, Path submissions, int slots) throws IOException {
+        this.submissions = submissions;
+        this.loader = submissions != null ? new StrategyLoader(submissions.resolve(".classes")) : null;
+        roster.verbose = false;
+        if (submissions != null) loader.register(roster, submissions);
+        jobs = Executors.newFixedThreadPool(slots);
+        socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    // Plays the full roster a few times so that the match loops are compiled before the first job.
+    long warmUp(int tournaments) {
+        long start = System.nanoTime();
+        for (int t = 0; t < tournaments; t++) {
+            Job job = new Job(Map.of("id", "warm-up", "seed", Integer.toString(t)), line -> { });
+            job.run();
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    void serve() throws IOException {
+        while (running) {
+            Socket client;
+            try {
+                client = socket.accept();
+            } catch (SocketException e) {
+                if (!running) break; // closed by SHUTDOWN
+                throw e;
+            }
+            Thread t = new Thread(() -> converse(client), "TournamentServer client " + client.getPort());
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    // Reads a client's lines until QUIT or end of input, then waits for its jobs before closing.
+    void converse(Socket client) {
+        List<Future<?>> submitted = new ArrayList<>();
+        try (Socket c = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(c.getOutputStream(), StandardCharsets.UTF_8))) {
+            Reply reply = line -> {
+                synchronized (out) {
+                    out.write(line);
+                    out.newLine();
+                    out.flush();
+                }
+            };
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (line.equals("QUIT")) break;
+                if (line.equals("SHUTDOWN")) {
+                    close();
+                    break;
+                }
+                if (line.equals("RELOAD")) {
+                    reply.send(reload());
+                    continue;
+                }
+                Job job;
+                try {
+                    job = new Job(parse(line), reply);
+                } catch (IllegalArgumentException e) {
+                    reply.send("ERROR - " + e.getMessage());
+                    continue;
+                }
+                // Holding the writer keeps the job's own replies behind ACCEPTED.
+                synchronized (out) {
+                    try {
+                        submitted.add(jobs.submit(job::run));
+                    } catch (RejectedExecutionException e) {
+                        reply.send("ERROR " + job.id + " the server is shutting down");
+                        continue;
+                    } catch (RuntimeException e) {
+                        reply.send("ERROR " + job.id + " " + e);
+                        continue;
+                    }
+                    reply.send("ACCEPTED " + job.id);
+                }
+            }
+            // Jobs report their own failures; this catches what escapes them, e.g. an Error.
+            for (Future<?> f : submitted) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    reply.send("ERROR - " + e.getCause());
+                }
+            }
+        } catch (IOException e) {
+            for (Future<?> f : submitted) f.cancel(true); // the client has gone
+        } catch (InterruptedException e) {
+            for (Future<?> f : submitted) f.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    String reload() {
+        if (loader == null) return "ERROR - no submissions directory";
+        rosterLock.writeLock().lock();
+        try {
+            int count = loader.register(roster, submissions);
+            return "RELOADED " + count + " " + roster.numPlayers;
+        } catch (Exception e) {
+            return "ERROR - reload failed: " + e.getMessage();
+        } finally {
+            rosterLock.writeLock().unlock();
+        }
+    }
+
+    static Map<String, String> parse(String line) {
+        Map<String, String> spec = new HashMap<>();
+        for (String field : line.split("\\s+")) {
+            int eq = field.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Expected key=value but got " + field);
+            spec.put(field.substring(0, eq), field.substring(eq + 1));
+        }
+        return spec;
+    }
+
+    interface Reply {
+        void send(String line) throws IOException;
+    }
+
+    class Job {
+        final String id, mode;
+        final long seed;
+        final int reps, workers, rounds;
+        final long samples;
+        final double noise;
+        final String rosterSpec;
+        final Reply reply;
+
+        Job(Map<String, String> spec, Reply reply) {
+            Map<String, String> s = new HashMap<>(spec);
+            synchronized (TournamentServer.this) {
+                id = s.containsKey("id") ? s.remove("id") : Integer.toString(++nextJob);
+            }
+            mode = take(s, "mode", "full");
+            seed = Long.parseLong(take(s, "seed", "1"));
+            reps = Integer.parseInt(take(s, "reps", "1"));
+            workers = Integer.parseInt(take(s, "workers", "1"));
+            rounds = Integer.parseInt(take(s, "rounds", "0"));
+            samples = Long.parseLong(take(s, "samples", "0"));
+            noise = Double.parseDouble(take(s, "noise", "0"));
+            rosterSpec = take(s, "roster", "all");
+            if (!s.isEmpty()) throw new IllegalArgumentException("Unknown keys " + s.keySet());
+            if (!List.of("full", "uniform", "stratified", "swiss", "ess").contains(mode))
+                throw new IllegalArgumentException("Unknown mode " + mode);
+            if ((mode.equals("uniform") || mode.equals("stratified")) && samples <= 0)
+                throw new IllegalArgumentException(mode + " needs samples=<n>");
+            if (mode.equals("swiss") && rounds <= 0) throw new IllegalArgumentException("swiss needs rounds=<n>");
+            if (reps < 1) throw new IllegalArgumentException("reps must be at least 1: " + reps);
+            if (workers < 1) throw new IllegalArgumentException("workers must be at least 1: " + workers);
+            this.reply = reply;
+        }
+
+        String take(Map<String, String> s, String key, String otherwise) {
+            String v = s.remove(key);
+            return v != null ? v : otherwise;
+        }
+
+        void run() {
+            long start = System.nanoTime();
+            rosterLock.readLock().lock();
+            try {
+                ThreePrisonersDilemma engine = engine(strategies());
+                switch (mode) {
+                    case "full": full(engine); break;
+                    case "ess": ess(engine); break;
+                    case "uniform": estimate(SampledTournament.uniform(engine, samples, seed)); break;
+                    case "stratified": estimate(SampledTournament.stratified(engine, samples, seed)); break;
+                    case "swiss": estimate(SampledTournament.swiss(engine, rounds, seed)); break;
+                }
+                reply.send("DONE " + id + " " + (System.nanoTime() - start) / 1_000_000);
+            } catch (Exception e) {
+                try {
+                    reply.send("ERROR " + id + " " + e);
+                } catch (IOException ignored) {
+                    // the client has gone
+                }
+            } finally {
+                rosterLock.readLock().unlock();
+            }
+        }
+
+        int[] strategies() {
+            if (rosterSpec.equals("all")) {
+                int[] all = new int[roster.numPlayers];
+                for (int p = 0; p < all.length; p++) all[p] = p;
+                return all;
+            }
+            String[] names = roster.playerNames();
+            String[] fields = rosterSpec.split(",");
+            int[] picked = new int[fields.length];
+            for (int f = 0; f < fields.length; f++) {
+                picked[f] = -1;
+                for (int p = 0; p < names.length && picked[f] < 0; p++) if (names[p].equals(fields[f])) picked[f] = p;
+                if (picked[f] < 0) {
+                    try {
+                        picked[f] = Integer.parseInt(fields[f]);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("No strategy named " + fields[f]);
+                    }
+                    if (picked[f] < 0 || picked[f] >= names.length) throw new IllegalArgumentException("No strategy " + fields[f]);
+                }
+            }
+            return picked;
+        }
+
+        // An engine whose strategy p is the roster's strategy[p], configured for this job.
+        ThreePrisonersDilemma engine(int[] strategy) {
+            ThreePrisonersDilemma engine = new ThreePrisonersDilemma() {
+                Player makePlayer(int which) {
+                    if (which < 0 || which >= strategy.length) throw new RuntimeException("Bad argument passed to makePlayer");
+                    return roster.makePlayer(strategy[which]);
+                }
+            };
+            engine.numPlayers = strategy.length;
+            engine.verbose = false;
+            engine.workers = workers;
+            engine.noise = noise;
+            engine.crn = new CommonRandomNumbers(seed, false);
+            return engine;
+        }
+
+        void full(ThreePrisonersDilemma engine) throws IOException {
+            String[] names = engine.playerNames();
+            double[] mean = new double[names.length];
+            for (int r = 0; r < reps; r++) {
+                engine.repetition = r;
+                ScoreTally tally = engine.playTournament();
+                for (int p = 0; p < names.length; p++) {
+                    mean[p] += tally.score(p) / reps;
+                    reply.send("SCORE " + id + " " + r + " " + names[p] + " " + tally.score(p));
+                }
+            }
+            int[] order = MonteCarlo.sortByMean(mean);
+            for (int place = 0; place < order.length; place++)
+                reply.send("RANK " + id + " " + (place + 1) + " " + names[order[place]] + " " + mean[order[place]]);
+        }
+
+        void ess(ThreePrisonersDilemma engine) throws IOException {
+            String[] names = engine.playerNames();
+            engine.scoreTensor = new ScoreTensor(names);
+            for (int r = 0; r < reps; r++) {
+                engine.repetition = r;
+                engine.playTournament();
+            }
+            EvolutionaryStability.Result e = EvolutionaryStability.analyse(engine.scoreTensor);
+            for (int x = 0; x < names.length; x++) {
+                int y = e.bestInvader[x];
+                reply.send("ESS " + id + " " + names[x] + " "
+                        + (e.ess[x] ? "ess" : e.neutrallyStable[x] ? "neutral" : "invadable") + " "
+                        + (y >= 0 ? names[y] + " " + e.invasionFitness[x][y] : "- NaN"));
+            }
+        }
+
+        void estimate(SampledTournament.Estimate e) throws IOException {
+            for (int p : MonteCarlo.sortByMean(e.total))
+                reply.send("ESTIMATE " + id + " " + e.names[p] + " " + e.total[p] + " " + e.stdError[p]);
+        }
+    }
+
+    public void close() throws IOException {
+        running = false;
+        jobs.shutdown();
+        socket.close();
+    }
+
+    // Usage: TournamentServer [port] [submissions dir] [slots]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path dir = args.length > 1 ? Paths.get(args[1]) : null;
+        int slots = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        try (TournamentServer server = new TournamentServer(port, dir, slots)) {
+            long millis = server.warmUp(5);
+            System.out.println("TournamentServer: " + server.roster.numPlayers + " strategies, warmed up in " + millis
+                    + " ms, listening on " + server.socket.getLocalSocketAddress());
+            server.serve();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.company;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/* Execution noise for one match: each intended action is flipped with probability e.
+
+ A match of n rounds is 3n independent chances to tremble, numbered
+ 3 * round + seat. Rather than draw a uniform for each one, the gap to the
+ next tremble is drawn from the geometric distribution,
+ floor(ln(U) / ln(1 - e)), so a match costs one draw per tremble plus one,
+ about 3ne + 1 in all, and the match loop pays a single comparison against
+ `next` per round. The flipped action is what is scored and what goes into
+ the histories, so every player, including the one who trembled, sees the
+ noisy history (as in the noisy tournaments in the literature). Strategies
+ that keep their own copy of what they meant to play still have it.
+
+ Set ThreePrisonersDilemma.noise to turn it on. With common random numbers
+ the tremble stream is keyed on the triple like every other, so runs at
+ different noise levels stay paired.
+
+ sweep() runs tournaments at several noise levels, one level per task in
+ parallel, and ranks the strategies at each; print() reports how robust
+ each strategy's rank is across the sweep. */
+public class TremblingHand {
+
+    final double logKeep;   // ln(1 - e)
+    final Random rng;
+    long next;              // number (3 * round + seat) of the next tremble
+
+    public TremblingHand(double epsilon, Random rng) {
+        if (!(epsilon > 0 && epsilon <= 1)) throw new IllegalArgumentException("Noise must be in (0, 1]: " + epsilon);
+        this.logKeep = Math.log1p(-epsilon);
+        this.rng = rng;
+        next = gap();
+    }
+
+    // Chances skipped before the next tremble.
+    long gap() {
+        double g = Math.log(1 - rng.nextDouble()) / logKeep; // 1 - nextDouble() is in (0, 1]
+        return g < Long.MAX_VALUE / 2 ? (long) g : Long.MAX_VALUE / 2;
+    }
+
+    // The seats that tremble in round n, as a mask (bit s for seat s). Rounds must be asked for in order.
+    int flips(int n) {
+        int mask = 0;
+        long end = 3L * (n + 1);
+        while (next < end) {
+            mask |= 1 << (int) (next - 3L * n);
+            next += 1 + gap();
+        }
+        return mask;
+    }
+
+    static class Sweep {
+        String[] names;
+        double[] epsilons;
+        double[][] score;   // [level][player], mean tournament score over the repetitions
+        int[][] rank;       // [level][player], 0 for first place
+        int repetitions;
+    }
+
+    // Tournaments on fresh engines from `roster` at each noise level, all on common random numbers from `seed`.
+    static Sweep sweep(Supplier<ThreePrisonersDilemma> roster, double[] epsilons, int repetitions, long seed) {
+        Sweep s = new Sweep();
+        s.epsilons = epsilons.clone();
+        s.repetitions = repetitions;
+        s.score = new double[epsilons.length][];
+        s.rank = new int[epsilons.length][];
+        IntStream.range(0, epsilons.length).parallel().forEach(e -> {
+            ThreePrisonersDilemma engine = roster.get();
+            engine.verbose = false;
+            engine.noise = epsilons[e];
+            engine.crn = new CommonRandomNumbers(seed, false);
+            double[] score = new double[engine.numPlayers];
+            for (int r = 0; r < repetitions; r++) {
+                engine.repetition = r;
+                ScoreTally tally = engine.playTournament();
+                for (int p = 0; p < score.length; p++) score[p] += tally.score(p) / repetitions;
+            }
+            int[] rank = new int[score.length];
+            int[] order = MonteCarlo.sortByMean(score);
+            for (int place = 0; place < order.length; place++) rank[order[place]] = place;
+            s.score[e] = score;
+            s.rank[e] = rank;
+            if (e == 0) s.names = engine.playerNames();
+        });
+        return s;
+    }
+
+    // Strategies from most to least robust: by mean rank over the sweep, with the rank at each level.
+    static void print(Sweep s, PrintStream out) {
+        int n = s.names.length, levels = s.epsilons.length;
+        double[] meanRank = new double[n];
+        for (int p = 0; p < n; p++) {
+            for (int e = 0; e < levels; e++) meanRank[p] += (double) s.rank[e][p] / levels;
+            meanRank[p] = -meanRank[p]; // sortByMean puts the highest first
+        }
+        StringBuilder header = new StringBuilder();
+        for (double e : s.epsilons) header.append(String.format(" %6s", "e=" + e));
+        out.println("Noise Sweep (" + s.repetitions + " repetitions per level; rank at each level, mean rank, score change)");
+        out.println(String.format("%-30s%s", "", header));
+        for (int p : MonteCarlo.sortByMean(meanRank)) {
+            StringBuilder ranks = new StringBuilder();
+            for (int e = 0; e < levels; e++) ranks.append(String.format(" %6d", s.rank[e][p] + 1));
+            double first = s.score[0][p], last = s.score[levels - 1][p];
+            out.println(String.format("%-30s%s   mean %5.2f, %+.1f%%", s.names[p], ranks, 1 - meanRank[p],
+                    first != 0 ? 100 * (last - first) / Math.abs(first) : 0));
+        }
+        out.println();
+    }
+
+    // Usage: TremblingHand [repetitions] [noise levels...]
+    public static void main(String[] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        double[] epsilons = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToDouble(Double::parseDouble).toArray()
+                : new double[]{0, 0.01, 0.02, 0.05, 0.1, 0.2};
+        print(sweep(ThreePrisonersDilemma::new, epsilons, repetitions, 1), System.out);
+    }
+}
@@ -0,0 +1,68 @@
+package com.company;
+
+/* Dense numbering of the round robin's triples.
+
+ runTournament visits the triples i <= j <= k < n in lexicographic order.
+ rank() gives a triple's position in that order and unrank() turns a
+ position back into the triple, both in O(log n), so a run (or any slice of
+ it) can be described by plain index ranges instead of three nested loops. */
+public class TripleIndex {
+
+    final int n;
+    final long size;
+
+    public TripleIndex(int n) {
+        this.n = n;
+        this.size = triples(n);
+    }
+
+    // Triples a <= b <= c drawn from m strategies, C(m+2,3).
+    static long triples(int m) {
+        return (long) m * (m + 1) * (m + 2) / 6;
+    }
+
+    // Pairs a <= b drawn from m strategies, C(m+1,2).
+    static long pairs(int m) {
+        return (long) m * (m + 1) / 2;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long rank(int i, int j, int k) {
+        if (i < 0 || i > j || j > k || k >= n) throw new IllegalArgumentException("Not a triple: " + i + "," + j + "," + k);
+        return (size - triples(n - i)) + (pairs(n - i) - pairs(n - j)) + (k - j);
+    }
+
+    // Fills ijk with the triple at the given rank.
+    public void unrank(long rank, int[] ijk) {
+        if (rank < 0 || rank >= size) throw new IllegalArgumentException("Rank " + rank + " out of 0.." + (size - 1));
+        // Largest i with size - triples(n-i) <= rank.
+        int lo = 0, hi = n - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (size - triples(n - mid) <= rank) lo = mid;
+            else hi = mid - 1;
+        }
+        int i = lo;
+        long r = rank - (size - triples(n - i));
+        // Largest j >= i with pairs(n-i) - pairs(n-j) <= r.
+        lo = i;
+        hi = n - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (pairs(n - i) - pairs(n - mid) <= r) lo = mid;
+            else hi = mid - 1;
+        }
+        int j = lo;
+        ijk[0] = i;
+        ijk[1] = j;
+        ijk[2] = (int) (j + r - (pairs(n - i) - pairs(n - j)));
+    }
+
+    // Number of triples whose smallest index is i, i.e. the size of stratum i.
+    long stratumSize(int i) {
+        return pairs(n - i);
+    }
+}